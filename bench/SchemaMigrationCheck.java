@@ -0,0 +1,134 @@
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * End-to-end check of the schema migration and of delta reloads against a real SQLite file, with the driver
+ * TaskDatabase uses in production:
+ *  - a database as release 1 left it (text columns, change tracking, one delete) migrates to CURRENT_VERSION,
+ *    with its values, AUTOINCREMENT mark, revision counter and tombstones intact
+ *  - a delete shows up in loadChangesSince as a deleted id
+ *  - a full import clears the tombstones, and every reader whose last load is older than the import gets
+ *    reloadRequired instead of a delta that misses the deletes; readers after it get deltas again
+ * Usage (from the repo root):
+ *   javac -encoding UTF-8 -d out src/*.java bench/*.java
+ *   java -cp out:sqlite-jdbc.jar SchemaMigrationCheck
+ * Exits with status 1 at the first failed check.
+ */
+public class SchemaMigrationCheck {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 3, 10, 8, 30);
+    private static final LocalDateTime DUE = LocalDateTime.of(2024, 3, 31, 17, 0);
+
+    public static void main(String[] args) throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        File file = File.createTempFile("schema-check", ".sqlite");
+        file.deleteOnExit();
+        String url = "jdbc:sqlite:" + file.getPath();
+        try {
+            long revisionAtVersion1 = createVersion1(url);
+            checkMigration(url, revisionAtVersion1);
+        } finally {
+            for (String suffix : List.of("", "-wal", "-shm")) {
+                Files.deleteIfExists(new File(file.getPath() + suffix).toPath());
+            }
+        }
+        System.out.println("All checks passed");
+    }
+
+    // Release 1: tasks 1 and 2 (2 depends on 1), task 3 added and deleted again; returns the revision after that
+    private static long createVersion1(String url) throws SQLException {
+        try (SqliteConnectionManager connections = new SqliteConnectionManager(url)) {
+            TaskSchema.migrate(connections, 1);
+            Connection conn = connections.connection();
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO tasks (title, description, created_at, due_date, is_completed, category, notes, effort, priority) " +
+                        "VALUES ('Design', 'Schema', '2024-03-10T08:30:00', '2024-03-31T17:00:00', 1, 'Work', 'n1', '2.5', 'HIGH')");
+                stmt.execute("INSERT INTO tasks (title, description, created_at, due_date, is_completed, category, notes, effort, priority) " +
+                        "VALUES ('Build', '', '2024-03-10T08:30:00', NULL, 0, 'Work', '', '0.125', 'LOW')");
+                stmt.execute("INSERT INTO task_dependencies (task_id, dependency_id) VALUES (2, 1)");
+                stmt.execute("INSERT INTO tasks (title, description, created_at, due_date, is_completed, category, notes, effort, priority) " +
+                        "VALUES ('Scrap', '', '2024-03-10T08:30:00', NULL, 0, '', '', '1', 'MEDIUM')");
+                stmt.execute("DELETE FROM tasks WHERE id = 3");
+            }
+            check(userVersion(conn) == 1, "database starts at schema version 1");
+            check(count(conn, "SELECT COUNT(*) FROM task_tombstones WHERE task_id = 3") == 1, "version 1 trigger left a tombstone");
+            return count(conn, "SELECT revision FROM task_revision WHERE id = 1");
+        }
+    }
+
+    private static void checkMigration(String url, long revisionAtVersion1) throws SQLException {
+        SqliteConnectionManager connections = new SqliteConnectionManager(url);
+        try (TaskDatabase db = new TaskDatabase(connections)) {
+            Connection conn = connections.connection();
+            check(userVersion(conn) == TaskSchema.CURRENT_VERSION, "migrated to version " + TaskSchema.CURRENT_VERSION);
+            check(count(conn, "SELECT tombstones_from FROM task_revision WHERE id = 1") == 0, "tombstones_from starts at 0");
+            check(db.getRevision() == revisionAtVersion1, "revision counter kept across the migration");
+            check(count(conn, "SELECT seq FROM sqlite_sequence WHERE name = 'tasks'") == 3, "AUTOINCREMENT mark kept");
+
+            List<Task> loaded = new ArrayList<>();
+            long loadedRevision = db.loadTasks(loaded);
+            check(loaded.size() == 2, "both tasks survive the migration");
+            Task design = find(loaded, 1);
+            Task build = find(loaded, 2);
+            check(design.createdAt().equals(CREATED) && design.dueDate().equals(DUE), "timestamps converted");
+            check(design.effort().compareTo(new BigDecimal("2.5")) == 0 && build.effort().compareTo(new BigDecimal("0.125")) == 0,
+                    "effort converted");
+            check(design.priority() == Task.Priority.HIGH && build.priority() == Task.Priority.LOW, "priority converted");
+            check(design.isCompleted() && !build.isCompleted(), "completion converted");
+            check(build.dueDate() == null && build.dependencies().equals(List.of(1)), "null due date and dependencies kept");
+
+            TaskDatabase.TaskChanges sinceVersion1 = db.loadChangesSince(revisionAtVersion1 - 1);
+            check(!sinceVersion1.reloadRequired() && sinceVersion1.deletedIds().equals(Set.of(3)),
+                    "tombstone written before the migration is still listed");
+
+            check(db.deleteTask(2), "delete");
+            TaskDatabase.TaskChanges afterDelete = db.loadChangesSince(loadedRevision);
+            check(!afterDelete.reloadRequired() && afterDelete.deletedIds().equals(Set.of(2))
+                    && afterDelete.changedTasks().isEmpty(), "delta lists the deleted id");
+            long beforeImport = afterDelete.revision();
+
+            Task imported = new Task(10, "Imported", "", CREATED, null, false, "Home", "", BigDecimal.ONE, Task.Priority.MEDIUM, List.of());
+            Task importedDependent = new Task(11, "Imported 2", "", CREATED, DUE, false, "Home", "", BigDecimal.ONE,
+                    Task.Priority.HIGH, List.of(10));
+            List<Task> saved = db.importTasks(List.of(imported, importedDependent));
+            check(saved != null && saved.size() == 2, "import");
+            check(count(conn, "SELECT COUNT(*) FROM task_tombstones") == 0, "import clears the tombstones");
+            check(db.loadChangesSince(beforeImport).reloadRequired(), "reader from before the import must reload");
+            check(db.loadChangesSince(loadedRevision).reloadRequired(), "older reader must reload too");
+
+            long afterImport = db.loadTasks(new ArrayList<>());
+            TaskDatabase.TaskChanges unchanged = db.loadChangesSince(afterImport);
+            check(!unchanged.reloadRequired() && unchanged.changedTasks().isEmpty(), "reader after the import is current");
+            int firstImportedId = saved.get(0).id();
+            check(firstImportedId > 3, "imported ids continue past the AUTOINCREMENT mark");
+            check(db.deleteTask(firstImportedId), "delete after import");
+            TaskDatabase.TaskChanges afterImportDelete = db.loadChangesSince(afterImport);
+            check(!afterImportDelete.reloadRequired() && afterImportDelete.deletedIds().equals(Set.of(firstImportedId)),
+                    "deltas work again after the import");
+        }
+    }
+
+    private static Task find(List<Task> tasks, int id) {
+        return tasks.stream().filter(task -> task.id() == id).findFirst()
+                .orElseThrow(() -> new AssertionError("Task " + id + " missing"));
+    }
+
+    private static int userVersion(Connection conn) throws SQLException {
+        return (int) count(conn, "PRAGMA user_version");
+    }
+
+    private static long count(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static void check(boolean passed, String what) {
+        System.out.println((passed ? "ok      " : "FAILED  ") + what);
+        if (!passed) System.exit(1);
+    }
+}
@@ -0,0 +1,356 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Benchmarks for the scheduling, schedule analytics, persistence and CSV hot paths.
+ * Self-contained harness in the spirit of JMH (warmup iterations, measured iterations, a blackhole sink, fixed
+ * seeds) so it runs with nothing but the JDK and the SQLite driver on the classpath.
+ * Synthetic task sets of 1k, 100k and 1M tasks come in three DAG shapes:
+ *  - WIDE: few roots, every other task depends on one or two roots
+ *  - DEEP: one long chain
+ *  - DIAMOND: layers of 64 tasks, each depending on two tasks of the previous layer
+ * Usage (from the repo root):
+ *   javac -encoding UTF-8 -d out src/*.java bench/*.java
+ *   java -cp out:sqlite-jdbc.jar TaskBenchmarks [name filter] [sizes, e.g. 1000,100000]
+ * -Dbench.out=results.csv also appends every result as a CSV row, for comparing runs.
+ * The executor.* entries report per-priority queue latency (submit to finish) of a burst of short tasks on a FIFO
+ * pool and on priority lanes, instead of timings of one operation.
+ * Thought: the data, iteration counts and seeds are fixed, so two runs on the same machine measure the same work.
+ */
+public class TaskBenchmarks {
+
+    enum Shape { WIDE, DEEP, DIAMOND }
+
+    private static final long SEED = 42L;
+    private static final int[] DEFAULT_SIZES = {1_000, 100_000, 1_000_000};
+    private static final int DB_SAVE_OPS = 1_000;
+    private static final int EXECUTOR_TASKS = 4_000;
+    private static final int EXECUTOR_WORKERS = 4;
+    private static final LocalDateTime BASE_DATE = LocalDateTime.of(2025, 1, 1, 9, 0);
+
+    private static final PrintStream REPORT = System.out;
+    private static volatile long blackhole; // Consumes results so the JIT cannot drop the measured work
+
+    private final String filter;
+    private final List<String> csvRows = new ArrayList<>();
+
+    private TaskBenchmarks(String filter) {
+        this.filter = filter;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        int[] sizes = args.length > 1 ?
+                Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray() : DEFAULT_SIZES;
+        System.out.println("JVM " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                + ", " + Runtime.getRuntime().availableProcessors() + " cpus, max heap "
+                + Runtime.getRuntime().maxMemory() / (1024 * 1024) + " MB");
+        System.out.printf("%-40s %10s %12s %12s %12s %12s%n", "benchmark", "size", "median ms", "min ms", "max ms", "ns/op");
+        TaskBenchmarks benchmarks = new TaskBenchmarks(filter);
+        for (int size : sizes) {
+            benchmarks.runScheduling(size);
+            benchmarks.runCsv(size);
+            benchmarks.runSnapshotFile(size);
+            benchmarks.runQueries(size);
+            benchmarks.runDatabase(size);
+        }
+        benchmarks.runExecutorLatency();
+        benchmarks.writeCsv();
+    }
+
+    // TopoSortStrategy ordering and cycle detection; TaskProcessor graph build and incremental delete
+    private void runScheduling(int size) {
+        for (Shape shape : Shape.values()) {
+            List<Task> tasks = generate(size, shape, SEED);
+            TaskStore store = new TaskStore();
+            store.replaceAll(tasks);
+            TaskProcessor processor = new TaskProcessor(store, null, new TopoSortStrategy(), TaskExecutionEngine.newBoundedPool(1));
+            Map<Integer, Set<Integer>> graph = graphOf(tasks);
+            TopoSortStrategy strategy = new TopoSortStrategy();
+
+            bench("topo.processTasks." + shape, size, 1, () ->
+                    strategy.processTasks(tasks, graph, ordered -> blackhole += ordered.size(), null));
+            bench("topo.findCycle." + shape, size, 1, () -> blackhole += TopoSortStrategy.findCycle(graph).size());
+            bench("processor.buildDependencyGraph." + shape, size, 1, processor::updateGraphAfterRevert);
+            bench("processor.peekReady50." + shape, size, 1, () -> blackhole += processor.peekReady(50).size());
+
+            // Delete and re-add a fixed sample of tasks so the graph is the same at every iteration
+            Random random = new Random(SEED);
+            List<Task> sample = new ArrayList<>();
+            for (int i = 0; i < 100; i++) sample.add(tasks.get(random.nextInt(size)));
+            bench("processor.updateGraphAfterDelete." + shape, size, sample.size(), () -> {
+                for (Task task : sample) {
+                    processor.updateGraphAfterDelete(task.id());
+                    processor.updateGraph(task);
+                }
+            });
+
+            // Effort change and back; on DEEP every change moves the whole rest of the chain, so fewer samples
+            ScheduleAnalytics schedule = new ScheduleAnalytics();
+            schedule.rebuild(tasks);
+            List<Task> edited = sample.subList(0, 10);
+            bench("schedule.rebuild." + shape, size, 1, () -> schedule.rebuild(tasks));
+            bench("schedule.update." + shape, size, edited.size() * 2, () -> {
+                for (Task task : edited) {
+                    schedule.update(new Task(task.id(), task.title(), task.description(), task.createdAt(), task.dueDate(),
+                            task.isCompleted(), task.category(), task.notes(), task.effort().add(BigDecimal.ONE),
+                            task.priority(), task.dependencies()));
+                    schedule.update(task);
+                }
+            });
+            processor.shutdown();
+        }
+    }
+
+    private void runCsv(int size) throws IOException {
+        List<Task> tasks = generate(size, Shape.DIAMOND, SEED);
+        File file = File.createTempFile("tasks-bench", ".csv");
+        file.deleteOnExit();
+        TaskFileHandler handler = new TaskFileHandler();
+        quietly(() -> bench("csv.export", size, 1, () -> handler.exportToCsv(tasks, file.getPath())));
+        quietly(() -> bench("csv.import", size, 1, () -> blackhole += handler.importFromCsv(file.getPath()).size()));
+        Files.deleteIfExists(file.toPath());
+    }
+
+    // Dashboard-style first pages: one selective indexed filter, one broad filter sorted by another key
+    private void runQueries(int size) {
+        List<Task> tasks = generate(size, Shape.WIDE, SEED);
+        TaskStore store = new TaskStore();
+        store.replaceAll(tasks);
+        TaskSnapshot snapshot = store.snapshot();
+        TaskQuery byCategory = TaskQuery.all().category("category7").completed(false).limit(50);
+        TaskQuery topByDueDate = TaskQuery.all().completed(false).sortBy(TaskQuery.SortKey.DUE_DATE).limit(50);
+        TaskQuery topByEffort = TaskQuery.all().priority(Task.Priority.HIGH).sortBy(TaskQuery.SortKey.EFFORT, true).limit(50);
+        bench("query.category.first50", size, 1, () -> blackhole += snapshot.query(byCategory).size());
+        bench("query.dueDate.top50", size, 1, () -> blackhole += snapshot.query(topByDueDate).size());
+        bench("query.effort.top50", size, 1, () -> blackhole += snapshot.query(topByEffort).size());
+        bench("query.dueDate.fullSort50", size, 1, () -> blackhole += snapshot.tasks().stream()
+                .filter(task -> !task.isCompleted())
+                .sorted(TaskQuery.SortKey.DUE_DATE.comparator(false)).limit(50).toList().size());
+
+        // Switching the list to effort order and reading a screenful, against the in-place sort it replaced
+        bench("view.effort.first50", size, 1, () -> {
+            Iterator<Task> sorted = snapshot.sortedBy(TaskQuery.SortKey.EFFORT).iterator();
+            for (int i = 0; i < 50 && sorted.hasNext(); i++) blackhole += sorted.next().id();
+        });
+        bench("view.effort.fullSort", size, 1, () -> {
+            List<Task> sorted = new ArrayList<>(snapshot.tasks());
+            sorted.sort(Comparator.comparing(Task::effort, Comparator.nullsLast(Comparator.naturalOrder())));
+            blackhole += sorted.get(0).id();
+        });
+        // Every put also replaces the task in each sorted view, once the views are in use, and in the snapshot's indexes
+        TaskStore.SORTED_KEYS.forEach(key -> blackhole += store.snapshot().sortedBy(key).size());
+        Random random = new Random(SEED);
+        List<Task> edits = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Task task = tasks.get(random.nextInt(size));
+            edits.add(new Task(task.id(), task.title(), task.description(), task.createdAt(), task.dueDate(),
+                    task.isCompleted(), task.category(), task.notes(), task.effort().add(BigDecimal.ONE),
+                    task.priority(), task.dependencies()));
+            edits.add(task);
+        }
+        bench("store.put", size, edits.size(), () -> edits.forEach(store::put));
+    }
+
+    // Startup path that replaces the full database load while the snapshot is current
+    private void runSnapshotFile(int size) throws IOException {
+        List<Task> tasks = generate(size, Shape.DIAMOND, SEED);
+        File file = File.createTempFile("tasks-bench", ".snapshot");
+        file.deleteOnExit();
+        TaskSnapshotFile snapshotFile = new TaskSnapshotFile(file.toPath());
+        bench("snapshot.write", size, 1, () -> snapshotFile.write(tasks, 1));
+        bench("snapshot.load", size, 1, () -> blackhole += snapshotFile.load(1).size());
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private void runDatabase(int size) throws IOException {
+        if (!matchesAny("db.loadTasks", "db.saveTask")) return;
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            System.out.println("db.* skipped: SQLite JDBC driver not on the classpath");
+            return;
+        }
+        File file = File.createTempFile("tasks-bench", ".sqlite");
+        file.deleteOnExit();
+        SqliteConnectionManager connections = new SqliteConnectionManager("jdbc:sqlite:" + file.getPath());
+        TaskDatabase db = new TaskDatabase(connections);
+        try {
+            db.importTasks(generate(size, Shape.DIAMOND, SEED));
+            List<Task> loaded = new ArrayList<>(size);
+            bench("db.loadTasks", size, 1, () -> {
+                db.loadTasks(loaded);
+                blackhole += loaded.size();
+            });
+            List<Task> inserts = generate(DB_SAVE_OPS, Shape.WIDE, SEED + 1);
+            bench("db.saveTask", size, DB_SAVE_OPS, () -> {
+                for (Task task : inserts) {
+                    blackhole += db.saveTask(task);
+                }
+            });
+        } finally {
+            db.close();
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    // A burst of EXECUTOR_TASKS tasks of ~200 us on EXECUTOR_WORKERS workers: tail latency per priority class
+    private void runExecutorLatency() throws InterruptedException {
+        List<String> names = new ArrayList<>();
+        for (TaskExecutionEngine.Mode mode : List.of(TaskExecutionEngine.Mode.POOL, TaskExecutionEngine.Mode.PRIORITY)) {
+            for (Task.Priority priority : Task.Priority.values()) names.add(executorName(mode, priority));
+        }
+        if (!matchesAny(names.toArray(new String[0]))) return;
+        for (TaskExecutionEngine.Mode mode : List.of(TaskExecutionEngine.Mode.POOL, TaskExecutionEngine.Mode.PRIORITY)) {
+            ExecutorService executor = TaskExecutionEngine.create(mode, EXECUTOR_WORKERS);
+            Random random = new Random(SEED);
+            Task.Priority[] priorities = Task.Priority.values();
+            for (int round = 0; round < 3; round++) { // The first two warm up
+                Map<Task.Priority, long[]> latencies = new EnumMap<>(Task.Priority.class);
+                Map<Task.Priority, Integer> counts = new EnumMap<>(Task.Priority.class);
+                for (Task.Priority priority : priorities) latencies.put(priority, new long[EXECUTOR_TASKS]);
+                CountDownLatch finished = new CountDownLatch(EXECUTOR_TASKS);
+                for (int i = 0; i < EXECUTOR_TASKS; i++) {
+                    Task.Priority priority = priorities[random.nextInt(priorities.length)];
+                    int slot = counts.merge(priority, 1, Integer::sum) - 1;
+                    long submitted = System.nanoTime();
+                    executor.execute(new PriorityLaneExecutor.Job(
+                            new PriorityLaneExecutor.Urgency(priority, random.nextInt(1_000_000)), () -> {
+                        LockSupport.parkNanos(200_000);
+                        latencies.get(priority)[slot] = System.nanoTime() - submitted;
+                        finished.countDown();
+                    }));
+                }
+                finished.await();
+                if (round < 2) continue;
+                for (Task.Priority priority : priorities) {
+                    long[] samples = Arrays.copyOf(latencies.get(priority), counts.getOrDefault(priority, 0));
+                    latency(executorName(mode, priority), samples);
+                }
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    private static String executorName(TaskExecutionEngine.Mode mode, Task.Priority priority) {
+        return "executor." + mode.name().toLowerCase(Locale.ROOT) + "." + priority.name().toLowerCase(Locale.ROOT);
+    }
+
+    private void latency(String name, long[] samples) {
+        if (samples.length == 0 || !matches(name)) return;
+        Arrays.sort(samples);
+        long p50 = samples[samples.length / 2];
+        long p99 = samples[Math.min(samples.length - 1, (int) Math.ceil(samples.length * 0.99) - 1)];
+        long max = samples[samples.length - 1];
+        REPORT.printf("%-40s %10d %9.1f p50 %9.1f p99 %9.1f max ms%n", name, samples.length, p50 / 1e6, p99 / 1e6, max / 1e6);
+        csvRows.add(name + "," + samples.length + "," + p50 + "," + p99 + "," + max + ",");
+    }
+
+    /**
+     * Generates size tasks with ids 1..size in a seeded shuffled order; dependencies always point to lower ids,
+     * so every shape is acyclic.
+     */
+    static List<Task> generate(int size, Shape shape, long seed) {
+        Random random = new Random(seed);
+        Task.Priority[] priorities = Task.Priority.values();
+        List<Task> tasks = new ArrayList<>(size);
+        int roots = Math.max(1, size / 100);
+        int layerWidth = 64;
+        for (int id = 1; id <= size; id++) {
+            List<Integer> dependencies = switch (shape) {
+                case WIDE -> id <= roots ? List.of() :
+                        distinct(1 + random.nextInt(roots), 1 + random.nextInt(roots));
+                case DEEP -> id == 1 ? List.of() : List.of(id - 1);
+                case DIAMOND -> {
+                    int layerStart = ((id - 1) / layerWidth) * layerWidth + 1;
+                    if (layerStart == 1) yield List.of();
+                    int previousLayer = layerStart - layerWidth;
+                    yield distinct(previousLayer + random.nextInt(layerWidth), previousLayer + random.nextInt(layerWidth));
+                }
+            };
+            tasks.add(new Task(id, "Task " + id, "Synthetic benchmark task", BASE_DATE,
+                    random.nextInt(10) == 0 ? null : BASE_DATE.plusHours(random.nextInt(24 * 365)),
+                    random.nextInt(4) == 0, "category" + random.nextInt(20), "",
+                    BigDecimal.valueOf(random.nextInt(80), 1), priorities[random.nextInt(priorities.length)],
+                    dependencies));
+        }
+        Collections.shuffle(tasks, random);
+        return tasks;
+    }
+
+    private static List<Integer> distinct(int a, int b) {
+        return a == b ? List.of(a) : List.of(a, b);
+    }
+
+    // Same shape as TaskProcessor's cached graph
+    private static Map<Integer, Set<Integer>> graphOf(List<Task> tasks) {
+        Map<Integer, Set<Integer>> graph = new HashMap<>(tasks.size() * 2);
+        for (Task task : tasks) {
+            graph.put(task.id(), new HashSet<>(task.dependencies()));
+        }
+        return graph;
+    }
+
+    private void bench(String name, int size, int opsPerIteration, Runnable operation) {
+        if (!matches(name)) return;
+        int warmup = size <= 1_000 ? 200 : size <= 100_000 ? 10 : 3;
+        int measured = size <= 1_000 ? 500 : size <= 100_000 ? 20 : 5;
+        for (int i = 0; i < warmup; i++) operation.run();
+        System.gc();
+        long[] samples = new long[measured];
+        for (int i = 0; i < measured; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        long median = samples[measured / 2];
+        REPORT.printf("%-40s %10d %12.3f %12.3f %12.3f %12d%n", name, size,
+                median / 1e6, samples[0] / 1e6, samples[measured - 1] / 1e6, median / opsPerIteration);
+        csvRows.add(name + "," + size + "," + median + "," + samples[0] + "," + samples[measured - 1] + "," + median / opsPerIteration);
+    }
+
+    // Substring of the name, e.g. "topo." for a group or "csv.import" for one entry
+    private boolean matches(String name) {
+        return filter.isEmpty() || name.contains(filter);
+    }
+
+    // Gate for a group whose setup is shared: runs if any of its entries would be reported
+    private boolean matchesAny(String... names) {
+        for (String name : names) {
+            if (matches(name)) return true;
+        }
+        return false;
+    }
+
+    // The file handler logs every call; keep the result table readable
+    private static void quietly(Runnable action) {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            action.run();
+        } finally {
+            System.setOut(REPORT);
+        }
+    }
+
+    private void writeCsv() throws IOException {
+        String path = System.getProperty("bench.out");
+        if (path == null || csvRows.isEmpty()) return;
+        File file = new File(path);
+        boolean header = !file.exists();
+        List<String> lines = new ArrayList<>();
+        if (header) lines.add("benchmark,size,median_ns,min_ns,max_ns,ns_per_op");
+        lines.addAll(csvRows);
+        Files.write(file.toPath(), lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
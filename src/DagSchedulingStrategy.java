@@ -0,0 +1,173 @@
+import javax.swing.*;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Dependency-driven scheduler: every task keeps a count of its unfinished dependencies.
+ * Tasks start as soon as their count reaches zero, and each completion decrements the counts of its dependents.
+ * Thought: unlike TopoSortStrategy no task is skipped because a worker reached it too early, so a whole DAG
+ * finishes in one run and the parallelism is bounded only by the width of the graph and the executor.
+ * Tasks that never become ready (missing or cyclic dependencies, failed dependencies) are reported at the end; if
+ * some of them depend on each other in a cycle, the run ends with a DependencyCycleException naming it.
+ */
+public class DagSchedulingStrategy implements TaskProcessingStrategy {
+
+    /**
+     * Without completion tracking the graph is released in dependency order on the calling thread, and the result is
+     * handed over as one ordered batch: ready tasks HIGH priority first, then earliest due date, like TopoSortStrategy.
+     */
+    @Override
+    public void processTasks(List<Task> tasks, Map<Integer, Set<Integer>> dependencyGraph,
+                             Consumer<List<Task>> batchProcessor, Runnable updateCallback) {
+        OrderingRunner ordering = new OrderingRunner();
+        DependencyCycleException cycle = null;
+        try {
+            processTasks(tasks, dependencyGraph, ordering, null);
+        } catch (DependencyCycleException e) { // The rest of the graph still runs; the cycle is reported after
+            cycle = e;
+        }
+        if (!ordering.order.isEmpty()) {
+            batchProcessor.accept(ordering.order);
+        } else if (cycle == null && updateCallback != null) {
+            SwingUtilities.invokeLater(updateCallback);
+        }
+        if (cycle != null) throw cycle;
+    }
+
+    /**
+     * Runs every incomplete task once all of its dependencies are complete, and blocks until the graph is drained.
+     * Throws DependencyCycleException, after everything outside the cycle has run, if tasks were left waiting on a cycle.
+     */
+    @Override
+    public void processTasks(List<Task> tasks, Map<Integer, Set<Integer>> dependencyGraph,
+                             TaskRunner runner, Runnable updateCallback) {
+        List<Task> snapshot = new ArrayList<>(tasks); // Workers replace entries in the live list while we run
+        Set<Integer> completed = new HashSet<>();
+        for (Task task : snapshot) {
+            if (task.isCompleted()) completed.add(task.id());
+        }
+
+        // Pending dependency counts and reverse edges (dependency -> dependents), read-only once workers start
+        Map<Integer, AtomicInteger> pendingCounts = new HashMap<>();
+        Map<Integer, List<Task>> dependents = new HashMap<>();
+        List<Task> ready = new ArrayList<>();
+        for (Task task : snapshot) {
+            if (task.isCompleted()) continue;
+            int pending = 0;
+            for (int depId : dependencyGraph.getOrDefault(task.id(), Collections.emptySet())) {
+                if (completed.contains(depId)) continue;
+                pending++;
+                dependents.computeIfAbsent(depId, k -> new ArrayList<>()).add(task);
+            }
+            pendingCounts.put(task.id(), new AtomicInteger(pending));
+            if (pending == 0) ready.add(task);
+        }
+
+        ready.sort(TopoSortStrategy.PRIORITY_ORDER); // Roots start HIGH priority first, then earliest due date
+
+        // One extra count for the submitting thread so the latch cannot open before all roots are submitted
+        AtomicInteger outstanding = new AtomicInteger(1);
+        AtomicInteger processed = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(1);
+        Scheduler scheduler = new Scheduler(runner, pendingCounts, dependents, outstanding, processed, finished);
+        for (Task task : ready) {
+            scheduler.submit(task);
+        }
+        if (outstanding.decrementAndGet() == 0) finished.countDown();
+
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("DAG run interrupted: " + e.getMessage());
+            return;
+        }
+
+        int skipped = pendingCounts.size() - processed.get();
+        if (skipped > 0) {
+            System.err.println("Skipped " + skipped + " tasks with missing, failed or cyclic dependencies.");
+        }
+        if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
+        List<Integer> cycle = skipped > 0 ? findWaitingCycle(pendingCounts, dependencyGraph) : List.of();
+        if (!cycle.isEmpty()) throw new DependencyCycleException(cycle); // The run completes with it, like TopoSortStrategy's
+    }
+
+    // Tasks still waiting on a dependency never got their count to zero; a cycle can only be among them
+    private static List<Integer> findWaitingCycle(Map<Integer, AtomicInteger> pendingCounts,
+                                                  Map<Integer, Set<Integer>> dependencyGraph) {
+        Map<Integer, Set<Integer>> waiting = new HashMap<>();
+        pendingCounts.forEach((id, pending) -> {
+            if (pending.get() > 0) waiting.put(id, new HashSet<>());
+        });
+        waiting.forEach((id, dependencies) -> {
+            for (int depId : dependencyGraph.getOrDefault(id, Collections.emptySet())) {
+                if (waiting.containsKey(depId)) dependencies.add(depId);
+            }
+        });
+        return TopoSortStrategy.findCycle(waiting);
+    }
+
+    /**
+     * TaskRunner that "runs" a task by appending it to the order and reporting it done at once.
+     * Thought: the first submit drains the queue on the calling thread and nested submits only enqueue, so a long
+     * chain neither recurses nor waits for a worker that does not exist, and the latch is open once it returns.
+     */
+    private static final class OrderingRunner implements TaskRunner {
+        final List<Task> order = new ArrayList<>();
+        private final PriorityQueue<Map.Entry<Task, Consumer<Boolean>>> ready =
+                new PriorityQueue<>(Map.Entry.comparingByKey(TopoSortStrategy.PRIORITY_ORDER));
+        private boolean draining;
+
+        @Override
+        public void runBatch(List<Task> orderedTasks) {
+            order.addAll(orderedTasks);
+        }
+
+        @Override
+        public void submit(Task task, Consumer<Boolean> onDone) {
+            ready.add(Map.entry(task, onDone));
+            if (draining) return;
+            draining = true;
+            try {
+                while (!ready.isEmpty()) {
+                    Map.Entry<Task, Consumer<Boolean>> next = ready.poll();
+                    order.add(next.getKey());
+                    next.getValue().accept(true);
+                }
+            } finally {
+                draining = false;
+            }
+        }
+    }
+
+    private record Scheduler(TaskRunner runner,
+                             Map<Integer, AtomicInteger> pendingCounts,
+                             Map<Integer, List<Task>> dependents,
+                             AtomicInteger outstanding,
+                             AtomicInteger processed,
+                             CountDownLatch finished) {
+
+        void submit(Task task) {
+            outstanding.incrementAndGet();
+            runner.submit(task, done -> onTaskFinished(task, done));
+        }
+
+        // Runs on the worker thread: release dependents before giving up our outstanding count
+        private void onTaskFinished(Task task, boolean done) {
+            try {
+                if (done) {
+                    processed.incrementAndGet();
+                    for (Task dependent : dependents.getOrDefault(task.id(), Collections.emptyList())) {
+                        if (pendingCounts.get(dependent.id()).decrementAndGet() == 0) {
+                            submit(dependent);
+                        }
+                    }
+                }
+            } finally {
+                if (outstanding.decrementAndGet() == 0) finished.countDown();
+            }
+        }
+    }
+}
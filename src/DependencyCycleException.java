@@ -0,0 +1,22 @@
+import java.util.List;
+
+/**
+ * Thrown by a strategy that cannot order the tasks because their dependencies form a cycle.
+ * The processing run it was thrown in completes with it.
+ */
+public class DependencyCycleException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Integer> cycle;
+
+    public DependencyCycleException(List<Integer> cycle) {
+        super("Dependency cycle detected (" + String.join(" -> ", cycle.stream().map(String::valueOf).toList())
+                + "). Please resolve circular dependencies.");
+        this.cycle = List.copyOf(cycle);
+    }
+
+    // Task ids along the cycle, "depends on" order, first and last element the same
+    public List<Integer> cycle() {
+        return cycle;
+    }
+}
@@ -4,13 +4,21 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 public class Main {
     private static TaskManager manager;
     private static JList<Task> taskList;
     private static JButton addButton;
     private static JButton processButton;
+    private static ProcessingRun currentRun; // Latest processing run, EDT only
+    private static boolean failureDialogOpen; // EDT only
+    private static int failuresWhileOpen; // EDT only: reported while the failure dialog was open
+    private static String latestFailure; // EDT only: the last of those
     private static Task editingTask = null;
 
     public static void main(String[] args) throws InterruptedException {
@@ -23,6 +31,7 @@ public class Main {
             JOptionPane.showMessageDialog(null, "Failed to initialize Task Manager: " + e.getMessage()); // Step 13
             return;
         }
+        Runtime.getRuntime().addShutdownHook(new Thread(manager::shutdown, "task-manager-shutdown"));
         SwingUtilities.invokeLater(Main::createAndShowGUI);
     }
 
@@ -33,8 +42,9 @@ public class Main {
         frame.setMinimumSize(new Dimension(1400, 500));
         frame.setResizable(true);
 
-        taskList = new JList<>(new DefaultListModel<>());
+        taskList = new JList<>(new TaskListModel());
         taskList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        taskList.setFixedCellHeight(20); // Lets JList size itself without rendering every row
         updateTaskDisplay(null);
         JScrollPane scrollPane = new JScrollPane(taskList);
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
@@ -50,8 +60,9 @@ public class Main {
         JTextField dueField = new JTextField(15);
         JTextField effortField = new JTextField(5);
         JComboBox<Task.Priority> priorityCombo = new JComboBox<>(Task.Priority.values());
-        JList<Task> dependencyList = new JList<>(new DefaultListModel<>());
+        JList<Task> dependencyList = new JList<>(new TaskListModel());
         dependencyList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        dependencyList.setFixedCellHeight(20);
         updateDependencyList(dependencyList);
         JScrollPane dependencyScroll = new JScrollPane(dependencyList);
         dependencyScroll.setPreferredSize(new Dimension(200, 100));
@@ -111,16 +122,27 @@ public class Main {
         updateFilterCategoryCombo(filterCategoryCombo);
         filterCategoryCombo.setSelectedItem("All Categories");
 
-        manager.setUpdateCallback(() -> {
+        manager.addRefreshListener((changedIds, fullRefresh) -> {
+            if (!fullRefresh && refreshRows(changedIds, (String) filterCategoryCombo.getSelectedItem(), dependencyList)) {
+                return; // Only rows already on screen changed (e.g. completions while processing)
+            }
             updateTaskDisplay((String) filterCategoryCombo.getSelectedItem());
             updateDependencyList(dependencyList);
             updateCategoryCombo(categoryCombo);
             updateFilterCategoryCombo(filterCategoryCombo);
-            processButton.setEnabled(true);
-            processButton.repaint();
             resetInputFields(titleField, dueField, effortField, priorityCombo, categoryCombo, dependencyList, addTaskPanel);
         });
 
+        // The engine reports failures on its event thread and moves on; the dialog is shown from the EDT.
+        // Notices (migrations, run summaries) only go to the log
+        manager.addEventListener(event -> {
+            if (event.isFailure()) {
+                SwingUtilities.invokeLater(() -> showFailure(frame, event.message()));
+            } else {
+                System.err.println(event.message());
+            }
+        });
+
         addButton.addActionListener(e -> {
             try {
                 String title = titleField.getText();
@@ -189,12 +211,25 @@ public class Main {
         });
 
         processButton.addActionListener(e -> {
+            if (currentRun != null && !currentRun.isDone()) { // The button cancels while a run is active
+                currentRun.cancel(true);
+                return;
+            }
             try {
-                processButton.setEnabled(false);
-                new Thread(() -> manager.processTasks()).start();
+                ProcessingRun run = manager.processTasks();
+                currentRun = run;
+                Timer progressTimer = new Timer(200, tick -> { // Poll the run's counts, the workers never wait on the EDT
+                    ProcessingRun.Progress progress = run.progress();
+                    processButton.setText("Cancel Processing (" + progress.finished() + "/" + progress.total() + ")");
+                });
+                progressTimer.start();
+                processButton.setText("Cancel Processing");
+                run.whenComplete((progress, error) -> SwingUtilities.invokeLater(() -> {
+                    progressTimer.stop();
+                    processButton.setText("Process Tasks"); // The engine publishes the run's summary as a notice
+                }));
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(frame, "Error starting task processing: " + ex.getMessage()); // Step 13
-                processButton.setEnabled(true);
             }
         });
 
@@ -209,8 +244,9 @@ public class Main {
 
         exportButton.addActionListener(e -> {
             try {
-                manager.exportTasksToCsv("tasks.csv");
-                JOptionPane.showMessageDialog(frame, "Tasks exported to tasks.csv");
+                if (manager.exportTasksToCsv("tasks.csv")) {
+                    JOptionPane.showMessageDialog(frame, "Tasks exported to tasks.csv");
+                }
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(frame, "Export failed: " + ex.getMessage()); // Step 13
             }
@@ -218,8 +254,9 @@ public class Main {
 
         importButton.addActionListener(e -> {
             try {
-                manager.importTasksFromCsv("tasks.csv");
-                JOptionPane.showMessageDialog(frame, "Tasks imported from tasks.csv");
+                if (manager.importTasksFromCsv("tasks.csv")) {
+                    JOptionPane.showMessageDialog(frame, "Tasks imported from tasks.csv");
+                }
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(frame, "Import failed: " + ex.getMessage()); // Step 13
             }
@@ -273,6 +310,26 @@ public class Main {
         frame.setVisible(true);
     }
 
+    // One failure dialog at a time: failures reported while it is open (e.g. a database that stays down) are
+    // counted and summed up in a single dialog once it is closed, instead of stacking a modal dialog per event
+    private static void showFailure(JFrame frame, String message) {
+        if (failureDialogOpen) {
+            failuresWhileOpen++;
+            latestFailure = message;
+            return;
+        }
+        failureDialogOpen = true;
+        try {
+            JOptionPane.showMessageDialog(frame, message); // Step 13; runs the event loop while open
+        } finally {
+            failureDialogOpen = false;
+        }
+        int missed = failuresWhileOpen;
+        failuresWhileOpen = 0;
+        if (missed == 1) showFailure(frame, latestFailure);
+        else if (missed > 1) showFailure(frame, missed + " more failures, the latest: " + latestFailure);
+    }
+
     private static void resetInputFields(JTextField titleField, JTextField dueField, JTextField effortField,
                                          JComboBox<Task.Priority> priorityCombo, JComboBox<String> categoryCombo,
                                          JList<Task> dependencyList, JPanel addTaskPanel) {
@@ -289,21 +346,36 @@ public class Main {
     }
 
     private static void updateTaskDisplay(String category) {
-        DefaultListModel<Task> model = (DefaultListModel<Task>) taskList.getModel();
-        model.clear();
+        TaskListModel model = (TaskListModel) taskList.getModel();
         List<Task> tasksToDisplay = "All Categories".equals(category) || category == null ?
                 manager.getAllTasks() : manager.getTasksByCategory(category);
-        for (Task task : tasksToDisplay) {
-            model.addElement(task);
+        model.setTasks(tasksToDisplay); // Diffs against the current rows and fires only for the changes
+    }
+
+    // Targeted refresh: replaces just the changed rows. False when the change needs a full refresh instead
+    // (task added or deleted, its category changed, or it moved in the current sort order)
+    private static boolean refreshRows(Set<Integer> changedIds, String category, JList<Task> dependencyList) {
+        TaskListModel taskModel = (TaskListModel) taskList.getModel();
+        TaskListModel dependencyModel = (TaskListModel) dependencyList.getModel();
+        boolean filtered = category != null && !"All Categories".equals(category);
+        TaskQuery.SortKey order = manager.getSortOrder();
+        Comparator<Task> sorted = order == TaskQuery.SortKey.DISPLAY_ORDER ? null : order.comparator(false);
+        List<Task> changedTasks = new ArrayList<>(changedIds.size());
+        for (int taskId : changedIds) {
+            Task task = manager.getTask(taskId);
+            Task shown = dependencyModel.findById(taskId);
+            if (task == null || shown == null || !Objects.equals(shown.category(), task.category())) return false;
+            if (sorted != null && sorted.compare(shown, task) != 0) return false;
+            changedTasks.add(task);
         }
+        if (filtered) { // Same category as before, so filter membership did not change either
+            changedTasks.removeIf(task -> taskModel.findById(task.id()) == null);
+        }
+        return taskModel.updateRows(changedTasks) && dependencyModel.updateRows(changedTasks);
     }
 
     private static void updateDependencyList(JList<Task> dependencyList) {
-        DefaultListModel<Task> model = (DefaultListModel<Task>) dependencyList.getModel();
-        model.clear();
-        for (Task task : manager.getAllTasks()) {
-            model.addElement(task);
-        }
+        ((TaskListModel) dependencyList.getModel()).setTasks(manager.getAllTasks());
     }
 
     private static void updateCategoryCombo(JComboBox<String> categoryCombo) {
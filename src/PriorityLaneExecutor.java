@@ -0,0 +1,241 @@
+import java.util.*;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed pool of worker threads that start the most urgent queued task first instead of the oldest:
+ *  - one lane per priority; a worker only takes from a lane when every higher lane is empty
+ *  - within a lane earliest deadline first (no deadline last), then submission order
+ *  - every worker has its own lanes; a task submitted from a worker (a dependent released by a completion) stays
+ *    on that worker, other submissions are spread round-robin, and an idle worker steals from the others
+ * Work that is not a Job (a plain Runnable) goes to the LOW lane without a deadline, i.e. FIFO behind everything.
+ * Thought: a FIFO pool starts tasks in submission order, so under contention priority only decided which tasks were
+ * submitted first. Here every take looks at the head of the same lane on all workers and picks the earliest, so
+ * the order is global EDF per lane while submitters and workers mostly lock different queues. A running task is
+ * never preempted; priority decides who gets the next free worker.
+ */
+public class PriorityLaneExecutor extends AbstractExecutorService {
+
+    // What the executor orders by; deadline in epoch millis, Long.MAX_VALUE for none
+    public record Urgency(Task.Priority lane, long deadline) {
+        static final Urgency NONE = new Urgency(Task.Priority.LOW, Long.MAX_VALUE);
+
+        public static Urgency of(Task task) {
+            Long due = TaskSchema.toEpochMillis(task.dueDate());
+            return new Urgency(task.priority(), due == null ? Long.MAX_VALUE : due);
+        }
+
+        // The higher lane and the earlier deadline of both
+        public Urgency max(Urgency other) {
+            return new Urgency(lane.compareTo(other.lane) <= 0 ? lane : other.lane, Math.min(deadline, other.deadline));
+        }
+    }
+
+    public record Job(Urgency urgency, Runnable body) implements Runnable {
+        @Override
+        public void run() {
+            body.run();
+        }
+    }
+
+    private static final int LANES = Task.Priority.values().length;
+    private static final Comparator<Entry> EARLIEST_DEADLINE = Comparator.comparingLong((Entry entry) -> entry.job.urgency.deadline())
+            .thenComparingLong(entry -> entry.sequence);
+
+    private record Entry(Job job, long sequence) {
+    }
+
+    private final Worker[] workers;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger(); // Entries in all lanes of all workers
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final Object idle = new Object(); // Workers wait here when every lane is empty
+    private final AtomicInteger liveWorkers;
+    private volatile boolean shutdown;
+
+    public PriorityLaneExecutor(int poolSize) {
+        int threads = Math.max(1, poolSize);
+        workers = new Worker[threads];
+        liveWorkers = new AtomicInteger(threads);
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i);
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Job job = command instanceof Job j ? j : new Job(Urgency.NONE, Objects.requireNonNull(command));
+        if (shutdown) throw new RejectedExecutionException("Executor is shut down");
+        Worker target = Thread.currentThread() instanceof WorkerThread own && own.owner() == this
+                ? workers[own.index] : workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+        Entry entry = new Entry(job, sequence.getAndIncrement());
+        synchronized (target) {
+            target.lanes.get(job.urgency.lane().ordinal()).add(entry);
+        }
+        queued.incrementAndGet();
+        synchronized (idle) {
+            idle.notify();
+        }
+    }
+
+    // Queued tasks across all workers
+    public int queuedCount() {
+        return Math.max(0, queued.get()); // Briefly -1 when a task is taken before its submitter counted it
+    }
+
+    private final class Worker {
+        final int index;
+        final WorkerThread thread;
+        final List<PriorityQueue<Entry>> lanes = new ArrayList<>(LANES); // Guarded by this; index = priority ordinal
+
+        Worker(int index) {
+            this.index = index;
+            for (int lane = 0; lane < LANES; lane++) {
+                lanes.add(new PriorityQueue<>(EARLIEST_DEADLINE));
+            }
+            thread = new WorkerThread(this::runLoop, index);
+        }
+
+        private void runLoop() {
+            try {
+                while (true) {
+                    Job job = take(this);
+                    if (job == null) return;
+                    try {
+                        job.run();
+                    } catch (RuntimeException e) { // Keep the worker; the caller's wrapper reports its own failures
+                        System.err.println("Task failed: " + e);
+                    }
+                    Thread.interrupted(); // A cancel aimed at that task must not hit the next one
+                }
+            } finally {
+                if (liveWorkers.decrementAndGet() == 0) {
+                    synchronized (idle) {
+                        idle.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    // Highest non-empty lane, earliest head across all workers; null once shut down and drained
+    private Job take(Worker self) {
+        while (true) {
+            for (int lane = 0; lane < LANES; lane++) {
+                Job job = pollEarliest(self, lane);
+                if (job != null) return job;
+            }
+            synchronized (idle) {
+                if (queued.get() > 0) continue; // Added since the scan (or being taken elsewhere): look again
+                if (shutdown) return null;
+                try {
+                    idle.wait();
+                } catch (InterruptedException e) {
+                    if (shutdown) return null; // shutdownNow
+                }
+            }
+        }
+    }
+
+    private Job pollEarliest(Worker self, int lane) {
+        while (true) {
+            Worker best = null;
+            Entry bestHead = null;
+            for (int i = 0; i < workers.length; i++) {
+                Worker worker = workers[(self.index + i) % workers.length];
+                Entry head;
+                synchronized (worker) {
+                    head = worker.lanes.get(lane).peek();
+                }
+                if (head != null && (bestHead == null || EARLIEST_DEADLINE.compare(head, bestHead) < 0)) {
+                    best = worker;
+                    bestHead = head;
+                }
+            }
+            if (best == null) return null;
+            synchronized (best) {
+                if (best.lanes.get(lane).peek() == bestHead) { // Otherwise another worker took it first: rescan
+                    best.lanes.get(lane).poll();
+                    queued.decrementAndGet();
+                    return bestHead.job;
+                }
+            }
+        }
+    }
+
+    private final class WorkerThread extends Thread {
+        final int index;
+
+        WorkerThread(Runnable loop, int index) {
+            super(loop, "task-worker-" + (index + 1));
+            this.index = index;
+            setDaemon(true); // Like the bounded pool: a running batch never keeps the JVM alive
+        }
+
+        PriorityLaneExecutor owner() {
+            return PriorityLaneExecutor.this;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        synchronized (idle) {
+            idle.notifyAll();
+        }
+    }
+
+    // Returns the queued tasks in the order they would have started
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> drained = new ArrayList<>();
+        for (int lane = 0; lane < LANES; lane++) {
+            List<Entry> entries = new ArrayList<>();
+            for (Worker worker : workers) {
+                synchronized (worker) {
+                    entries.addAll(worker.lanes.get(lane));
+                    queued.addAndGet(-worker.lanes.get(lane).size());
+                    worker.lanes.get(lane).clear();
+                }
+            }
+            entries.sort(EARLIEST_DEADLINE);
+            for (Entry entry : entries) {
+                drained.add(entry.job);
+            }
+        }
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        return drained;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && liveWorkers.get() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (idle) {
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+            }
+        }
+        return true;
+    }
+}
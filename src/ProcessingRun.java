@@ -0,0 +1,238 @@
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Handle for one processing run started by TaskProcessor.processTasks.
+ *  - get() / whenComplete(): completion, with the final counts
+ *  - cancel(true): stops the run; queued tasks are dropped and running ones interrupted
+ *  - progress(): live counts of queued, running, done, skipped and failed tasks
+ * A run with a timeout stops the same way when it expires, and completes with a TimeoutException.
+ * Thought: the counts are atomics bumped by the workers, so observing a run costs them nothing; a UI polls progress().
+ * The run is complete once the strategy has handed over its last task and every handed-over task has finished.
+ * A cancel or timeout completes the handle at once, while interrupted tasks may still be finishing; the run only
+ * counts as finished (isFinished) once the last of them has returned, and TaskProcessor starts the next run after that.
+ */
+public class ProcessingRun implements Future<ProcessingRun.Progress> {
+
+    /**
+     * Task counts of a run. Done: completed by this run; skipped: nothing to do (already completed, dependencies not
+     * completed, edited meanwhile) or dropped by a cancel before starting; failed: threw or was interrupted.
+     */
+    public record Progress(int queued, int running, int done, int skipped, int failed) {
+        public int finished() {
+            return done + skipped + failed;
+        }
+
+        public int total() {
+            return queued + running + finished();
+        }
+    }
+
+    // Across all runs: time from hand-over to start, time spent running, and outcomes; see TaskMetrics
+    private static final TaskMetrics.Histogram QUEUE_TIME = TaskMetrics.histogram("task.queueWait");
+    private static final TaskMetrics.Histogram RUN_TIME = TaskMetrics.histogram("task.run");
+    private static final TaskMetrics.Counter DONE = TaskMetrics.counter("task.done");
+    private static final TaskMetrics.Counter SKIPPED = TaskMetrics.counter("task.skipped");
+    private static final TaskMetrics.Counter FAILED = TaskMetrics.counter("task.failed");
+    // Per priority class: time from hand-over to start, and from hand-over to completion (completed tasks only)
+    private static final Map<Task.Priority, TaskMetrics.Histogram> QUEUE_TIME_BY_PRIORITY = new EnumMap<>(Task.Priority.class);
+    private static final Map<Task.Priority, TaskMetrics.Histogram> LATENCY_BY_PRIORITY = new EnumMap<>(Task.Priority.class);
+
+    static {
+        for (Task.Priority priority : Task.Priority.values()) {
+            String name = priority.name().toLowerCase(Locale.ROOT);
+            QUEUE_TIME_BY_PRIORITY.put(priority, TaskMetrics.histogram("task.queueWait." + name));
+            LATENCY_BY_PRIORITY.put(priority, TaskMetrics.histogram("task.latency." + name));
+        }
+    }
+
+    private final CompletableFuture<Progress> completion = new CompletableFuture<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    // Handed-over tasks not finished yet, plus one for the strategy until it has handed over everything
+    private final AtomicInteger outstanding = new AtomicInteger(1);
+    private final CountDownLatch finished = new CountDownLatch(1); // Opens when outstanding reaches 0
+    private final Set<Thread> workers = new HashSet<>(); // Guarded by itself: threads running this run's tasks
+    private volatile boolean stopped;
+
+    ProcessingRun(Duration timeout) {
+        if (timeout != null && !timeout.isZero() && !timeout.isNegative()) {
+            CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+                if (completion.isDone()) return;
+                stop();
+                completion.completeExceptionally(new TimeoutException("Processing run exceeded " + timeout.toMillis() + " ms"));
+            });
+        }
+    }
+
+    public Progress progress() {
+        return new Progress(queued.get(), running.get(), done.get(), skipped.get(), failed.get());
+    }
+
+    /**
+     * Calls action once the run has completed, was cancelled or timed out (on the thread that ended it).
+     */
+    public ProcessingRun whenComplete(BiConsumer<Progress, Throwable> action) {
+        completion.whenComplete(action);
+        return this;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (completion.isDone()) return false;
+        stopped = true;
+        if (mayInterruptIfRunning) interruptWorkers();
+        return completion.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return completion.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * True once no task of this run is queued or running any more. Unlike isDone(), false while a cancelled or
+     * timed out run still waits for its interrupted tasks to return.
+     */
+    public boolean isFinished() {
+        return finished.getCount() == 0;
+    }
+
+    // Blocks until isFinished()
+    void awaitFinished() throws InterruptedException {
+        finished.await();
+    }
+
+    @Override
+    public Progress get() throws InterruptedException, ExecutionException {
+        return completion.get();
+    }
+
+    @Override
+    public Progress get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return completion.get(timeout, unit);
+    }
+
+    /**
+     * Queues one task on the executor. onDone always runs, with true only if work completed the task, so a
+     * strategy waiting on its callbacks drains even when the run is stopped.
+     * @param urgency Start order on a PriorityLaneExecutor; other executors ignore it
+     */
+    void execute(Executor executor, Task task, PriorityLaneExecutor.Urgency urgency, BooleanSupplier work,
+                 Consumer<Boolean> onDone) {
+        queued.incrementAndGet();
+        outstanding.incrementAndGet();
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(new PriorityLaneExecutor.Job(urgency,
+                    () -> runQueued(task.priority(), work, onDone, queuedAt)));
+        } catch (RejectedExecutionException e) { // Executor shut down
+            queued.decrementAndGet();
+            failed.incrementAndGet();
+            FAILED.increment();
+            finishTask(onDone, false);
+        }
+    }
+
+    // The strategy has returned: no more tasks will be handed over
+    void submissionsDone() {
+        if (outstanding.decrementAndGet() == 0) finish();
+    }
+
+    // The strategy itself failed; tasks already queued still finish but the run reports the error
+    void fail(Throwable error) {
+        stop();
+        completion.completeExceptionally(error);
+    }
+
+    private void runQueued(Task.Priority priority, BooleanSupplier work, Consumer<Boolean> onDone, long queuedAt) {
+        queued.decrementAndGet();
+        long start = System.nanoTime();
+        QUEUE_TIME.record(start - queuedAt);
+        QUEUE_TIME_BY_PRIORITY.get(priority).record(start - queuedAt);
+        boolean completed = false;
+        try {
+            if (stopped) {
+                skipped.incrementAndGet();
+                SKIPPED.increment();
+                return;
+            }
+            running.incrementAndGet();
+            Thread current = Thread.currentThread();
+            synchronized (workers) {
+                workers.add(current);
+            }
+            try {
+                completed = work.getAsBoolean();
+                if (completed) {
+                    done.incrementAndGet();
+                    DONE.increment();
+                    RUN_TIME.recordSince(start); // Skipped tasks return at once and would drag the percentiles down
+                    LATENCY_BY_PRIORITY.get(priority).recordSince(queuedAt);
+                } else if (current.isInterrupted()) {
+                    failed.incrementAndGet();
+                    FAILED.increment();
+                } else {
+                    skipped.incrementAndGet();
+                    SKIPPED.increment();
+                }
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                FAILED.increment();
+                System.err.println("Task failed: " + e);
+            } finally {
+                synchronized (workers) {
+                    workers.remove(current);
+                }
+                Thread.interrupted(); // Don't leak a cancel into whatever the pool thread runs next
+                running.decrementAndGet();
+            }
+        } finally {
+            finishTask(onDone, completed);
+        }
+    }
+
+    // onDone first: it may hand over dependents, which must count as outstanding before this task stops counting
+    private void finishTask(Consumer<Boolean> onDone, boolean completed) {
+        try {
+            onDone.accept(completed);
+        } finally {
+            if (outstanding.decrementAndGet() == 0) finish();
+        }
+    }
+
+    // Completes the handle unless a cancel, timeout or failure already did, then lets the next run start
+    private void finish() {
+        completion.complete(progress());
+        finished.countDown();
+    }
+
+    private void stop() {
+        stopped = true;
+        interruptWorkers();
+    }
+
+    // Under the lock so a thread is only interrupted while it is still running one of our tasks
+    private void interruptWorkers() {
+        synchronized (workers) {
+            workers.forEach(Thread::interrupt);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import javax.swing.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges change notifications into at most one refresh per frame.
+ * Workers and the manager report which task ids changed (or that everything changed); the first report in a
+ * frame schedules a single dispatch on the EDT after the frame budget, and everything reported until then is
+ * delivered together. Listeners get the changed ids, so they can update those rows instead of redrawing.
+ * Thought: with thousands of completions per second, posting one full refresh per completion flooded the EDT queue.
+ * The frame budget is -Dtaskmanager.refresh.frameMs (default 33 ms, ~30 refreshes per second).
+ */
+public class RefreshCoordinator {
+
+    @FunctionalInterface
+    public interface RefreshListener {
+        /**
+         * Called on the EDT.
+         * @param changedIds Ids of tasks added, changed or removed since the last refresh
+         * @param fullRefresh True if the change is not limited to changedIds (reload, import, sort, revert...)
+         */
+        void onRefresh(Set<Integer> changedIds, boolean fullRefresh);
+    }
+
+    static final String FRAME_PROPERTY = "taskmanager.refresh.frameMs";
+
+    private final long frameMillis;
+    private final List<RefreshListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService timer;
+    private final Object lock = new Object();
+    private Set<Integer> changedIds = new HashSet<>(); // Guarded by lock
+    private boolean fullRefresh; // Guarded by lock
+    private boolean scheduled; // Guarded by lock
+
+    public RefreshCoordinator(long frameMillis) {
+        this.frameMillis = Math.max(0, frameMillis);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-refresh-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static RefreshCoordinator fromSystemProperties() {
+        return new RefreshCoordinator(Long.getLong(FRAME_PROPERTY, 33L));
+    }
+
+    public void addListener(RefreshListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RefreshListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Safe to call from any thread
+    public void taskChanged(int taskId) {
+        synchronized (lock) {
+            changedIds.add(taskId);
+            schedule();
+        }
+    }
+
+    public void tasksChanged(Collection<Integer> taskIds) {
+        synchronized (lock) {
+            changedIds.addAll(taskIds);
+            schedule();
+        }
+    }
+
+    public void allChanged() {
+        synchronized (lock) {
+            fullRefresh = true;
+            schedule();
+        }
+    }
+
+    // Caller holds lock
+    private void schedule() {
+        if (scheduled) return;
+        scheduled = true;
+        timer.schedule(() -> SwingUtilities.invokeLater(this::dispatch), frameMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void dispatch() {
+        Set<Integer> ids;
+        boolean full;
+        synchronized (lock) {
+            ids = Collections.unmodifiableSet(changedIds);
+            full = fullRefresh;
+            changedIds = new HashSet<>();
+            fullRefresh = false;
+            scheduled = false;
+        }
+        for (RefreshListener listener : listeners) {
+            listener.onRefresh(ids, full);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Schedule metrics over the dependency graph, kept up to date as tasks change:
+ *  - earliest start/finish of every task with unlimited parallelism (a task starts when its last dependency ends)
+ *  - latest start/finish that does not delay the whole project, and slack = latest start - earliest start
+ *  - project duration and a critical path (a zero-slack chain from a root to the last task to finish)
+ *  - tasks that will miss their due date if work starts at a given time
+ * Times are offsets from the project start. A task takes its effort in hours; completed tasks take no time.
+ * Thought: every task carries a level above all of its dependencies. A change re-evaluates the changed task and
+ * then, in level order, only the dependents (earliest times) or dependencies (remaining chain length) whose
+ * inputs actually changed, so the work is proportional to what moved, not to the DAG. Latest times are derived
+ * on query from the remaining chain length ("tail": own duration plus the longest chain of dependents after it),
+ * so a new project end does not touch every task. Tasks on or behind a dependency cycle may keep stale values.
+ * TaskProcessor feeds it from updateGraph, updateGraphAfterDelete and the graph rebuilds.
+ */
+public class ScheduleAnalytics {
+
+    // Offsets from the project start
+    public record TaskSchedule(int taskId, Duration earliestStart, Duration earliestFinish,
+                               Duration latestStart, Duration latestFinish, Duration slack) {
+        public boolean isCritical() {
+            return slack.isZero();
+        }
+    }
+
+    private static final long NO_DUE_DATE = Long.MIN_VALUE;
+    private static final BigDecimal MILLIS_PER_HOUR = BigDecimal.valueOf(3_600_000);
+    private static final Comparator<Node> BY_LEVEL = Comparator.comparingInt(node -> node.level);
+
+    private final Map<Integer, Node> nodes = new HashMap<>(); // Tasks, plus placeholders for missing dependencies
+    private final TreeMap<Long, Integer> finishCounts = new TreeMap<>(); // Earliest finish -> tasks; last key = project end
+    private final TreeMap<Long, Set<Integer>> tasksByDueMargin = new TreeMap<>(); // Due - earliest finish -> open tasks
+    private int epoch; // Marks the nodes already queued in the current pass
+
+    private static final class Node {
+        final int id;
+        final List<Node> dependencies = new ArrayList<>(2);
+        final List<Node> dependents = new ArrayList<>(2);
+        boolean present; // False for a dependency id that has no task (yet)
+        boolean completed;
+        long duration; // Milliseconds
+        long due = NO_DUE_DATE; // Epoch milliseconds of the wall-clock due date, as stored in the database
+        long earliestStart;
+        long earliestFinish; // What the indexes hold for this task
+        long tail; // duration + longest chain of dependents after this task
+        int level; // Greater than the level of every dependency; never lowered, only raised
+        int mark;
+        int pending; // Dependencies not yet ordered, during a rebuild
+
+        Node(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Replaces everything with the given tasks, e.g. after a reload or a revert. O(V + E) plus the index inserts.
+     */
+    public synchronized void rebuild(Collection<Task> tasks) {
+        nodes.clear();
+        finishCounts.clear();
+        tasksByDueMargin.clear();
+        for (Task task : tasks) {
+            Node node = nodes.computeIfAbsent(task.id(), Node::new);
+            setTask(node, task);
+            for (int depId : task.dependencies()) {
+                Node dep = nodes.computeIfAbsent(depId, Node::new);
+                if (dep == node || node.dependencies.contains(dep)) continue;
+                node.dependencies.add(dep);
+                dep.dependents.add(node);
+            }
+        }
+
+        // Kahn's order gives levels and lets one sweep each way compute every value
+        List<Node> order = new ArrayList<>(nodes.size());
+        for (Node node : nodes.values()) {
+            node.pending = node.dependencies.size();
+            if (node.dependencies.isEmpty()) order.add(node);
+        }
+        for (int i = 0; i < order.size(); i++) {
+            Node node = order.get(i);
+            long start = 0;
+            int level = 0;
+            for (Node dep : node.dependencies) {
+                start = Math.max(start, dep.earliestFinish);
+                level = Math.max(level, dep.level + 1);
+            }
+            node.level = level;
+            node.earliestStart = start;
+            node.earliestFinish = start + node.duration;
+            for (Node dependent : node.dependents) {
+                if (--dependent.pending == 0) order.add(dependent);
+            }
+        }
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Node node = order.get(i);
+            node.tail = node.duration + maxTail(node.dependents);
+        }
+        if (order.size() < nodes.size()) {
+            System.err.println("Schedule: " + (nodes.size() - order.size()) + " tasks on or behind a dependency cycle");
+        }
+        for (Node node : nodes.values()) {
+            index(node);
+        }
+    }
+
+    // Task added or changed (effort, due date, completion or dependencies)
+    public synchronized void update(Task task) {
+        Node node = nodes.computeIfAbsent(task.id(), Node::new);
+        List<Node> upstream = new ArrayList<>(node.dependencies); // Former dependencies: their tail may shrink
+        upstream.add(node);
+        unindex(node);
+        unlinkDependencies(node);
+        setTask(node, task);
+        linkDependencies(node, task.dependencies());
+        index(node);
+        forward(List.of(node));
+        upstream.removeIf(dep -> nodes.get(dep.id) != dep); // Placeholders dropped by the unlink
+        upstream.addAll(node.dependencies); // New dependencies: their tail may grow
+        backward(upstream);
+    }
+
+    // Task deleted. Like TaskProcessor.updateGraphAfterDelete, its dependents keep their edge to the id, now to a
+    // placeholder, so update() finds them again if a task with that id comes back (e.g. a delta reload)
+    public synchronized void remove(int taskId) {
+        Node node = nodes.get(taskId);
+        if (node == null || !node.present) return;
+        unindex(node);
+        List<Node> dependencies = new ArrayList<>(node.dependencies);
+        unlinkDependencies(node);
+        if (node.dependents.isEmpty()) {
+            nodes.remove(taskId);
+        } else {
+            node.present = false;
+            node.completed = false;
+            node.duration = 0;
+            node.due = NO_DUE_DATE;
+            node.earliestStart = 0;
+            node.earliestFinish = 0;
+        }
+        dependencies.removeIf(dep -> nodes.get(dep.id) != dep);
+        forward(new ArrayList<>(node.dependents));
+        backward(dependencies);
+    }
+
+    public synchronized Duration projectDuration() {
+        return Duration.ofMillis(projectEnd());
+    }
+
+    // Null for unknown tasks
+    public synchronized TaskSchedule schedule(int taskId) {
+        Node node = nodes.get(taskId);
+        if (node == null || !node.present) return null;
+        long latestStart = projectEnd() - node.tail;
+        return new TaskSchedule(taskId, Duration.ofMillis(node.earliestStart), Duration.ofMillis(node.earliestFinish),
+                Duration.ofMillis(latestStart), Duration.ofMillis(latestStart + node.duration),
+                Duration.ofMillis(latestStart - node.earliestStart));
+    }
+
+    /**
+     * One longest chain through the graph, first task first; every task on it has zero slack.
+     * Walks back from a task finishing at the project end, O(V) to find it plus the chain's edges.
+     */
+    public synchronized List<Integer> criticalPath() {
+        long end = projectEnd();
+        Node current = null;
+        for (Node node : nodes.values()) {
+            if (node.present && node.earliestFinish == end) {
+                current = node;
+                break;
+            }
+        }
+        List<Integer> path = new ArrayList<>();
+        while (current != null && path.size() <= nodes.size()) { // Bounded in case stale values on a cycle match
+            path.add(current.id);
+            Node previous = null;
+            for (Node dep : current.dependencies) {
+                if (dep.present && dep.earliestFinish == current.earliestStart) {
+                    previous = dep;
+                    break;
+                }
+            }
+            current = previous;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Open tasks whose earliest finish, counted from start, is after their due date; most overdue first.
+     * O(log n + k) via the due margin index.
+     */
+    public synchronized List<Integer> lateTasks(LocalDateTime start) {
+        List<Integer> late = new ArrayList<>();
+        for (Set<Integer> ids : tasksByDueMargin.headMap(TaskSchema.toEpochMillis(start), false).values()) {
+            late.addAll(ids);
+        }
+        return late;
+    }
+
+    private long projectEnd() {
+        return finishCounts.isEmpty() ? 0 : finishCounts.lastKey();
+    }
+
+    private static void setTask(Node node, Task task) {
+        node.present = true;
+        node.completed = task.isCompleted();
+        node.duration = task.isCompleted() || task.effort() == null ? 0 :
+                task.effort().multiply(MILLIS_PER_HOUR).longValue();
+        node.due = task.dueDate() == null ? NO_DUE_DATE : TaskSchema.toEpochMillis(task.dueDate());
+    }
+
+    private void linkDependencies(Node node, List<Integer> dependencyIds) {
+        for (int depId : dependencyIds) {
+            Node dep = nodes.computeIfAbsent(depId, Node::new);
+            if (dep == node || node.dependencies.contains(dep)) continue; // Self edges are a cycle, skip them
+            node.dependencies.add(dep);
+            dep.dependents.add(node);
+            if (node.level <= dep.level) raiseLevel(node, dep.level + 1);
+        }
+    }
+
+    private void unlinkDependencies(Node node) {
+        for (Node dep : node.dependencies) {
+            dep.dependents.remove(node);
+            if (!dep.present && dep.dependents.isEmpty()) nodes.remove(dep.id); // Placeholder nobody needs
+        }
+        node.dependencies.clear();
+    }
+
+    // Restores level(dependent) > level(dependency) below start after a new edge; touches only nodes that must move
+    private void raiseLevel(Node start, int level) {
+        start.level = level;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (Node dependent : node.dependents) {
+                if (dependent.level > node.level) continue;
+                if (dependent == start || node.level >= nodes.size()) return; // The new edge closed a cycle
+                dependent.level = node.level + 1;
+                stack.push(dependent);
+            }
+        }
+    }
+
+    // Earliest times of the seeds, then of every dependent whose dependencies' finish moved, in level order
+    private void forward(Collection<Node> seeds) {
+        epoch++;
+        PriorityQueue<Node> queue = new PriorityQueue<>(BY_LEVEL);
+        for (Node seed : seeds) {
+            enqueue(queue, seed);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            long start = 0;
+            for (Node dep : node.dependencies) {
+                if (dep.present) start = Math.max(start, dep.earliestFinish);
+            }
+            long previousFinish = node.earliestFinish;
+            if (start != node.earliestStart || start + node.duration != previousFinish) {
+                unindex(node);
+                node.earliestStart = start;
+                node.earliestFinish = start + node.duration;
+                index(node);
+            }
+            if (node.earliestFinish != previousFinish) {
+                for (Node dependent : node.dependents) {
+                    enqueue(queue, dependent);
+                }
+            }
+        }
+    }
+
+    // Remaining chain lengths of the seeds, then of every dependency whose dependents' tails moved, in level order
+    private void backward(Collection<Node> seeds) {
+        epoch++;
+        PriorityQueue<Node> queue = new PriorityQueue<>(BY_LEVEL.reversed());
+        for (Node seed : seeds) {
+            enqueue(queue, seed);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            long tail = node.duration + maxTail(node.dependents);
+            if (tail != node.tail) {
+                node.tail = tail;
+                for (Node dep : node.dependencies) {
+                    enqueue(queue, dep);
+                }
+            }
+        }
+    }
+
+    // Each node at most once per pass, which also keeps a pass over a cycle finite
+    private void enqueue(PriorityQueue<Node> queue, Node node) {
+        if (node.mark != epoch) {
+            node.mark = epoch;
+            queue.add(node);
+        }
+    }
+
+    private static long maxTail(List<Node> dependents) {
+        long tail = 0;
+        for (Node dependent : dependents) {
+            tail = Math.max(tail, dependent.tail);
+        }
+        return tail;
+    }
+
+    private void index(Node node) {
+        if (!node.present) return;
+        finishCounts.merge(node.earliestFinish, 1, Integer::sum);
+        if (!node.completed && node.due != NO_DUE_DATE) {
+            tasksByDueMargin.computeIfAbsent(node.due - node.earliestFinish, k -> new HashSet<>()).add(node.id);
+        }
+    }
+
+    private void unindex(Node node) {
+        if (!node.present) return;
+        finishCounts.computeIfPresent(node.earliestFinish, (k, count) -> count == 1 ? null : count - 1);
+        if (!node.completed && node.due != NO_DUE_DATE) {
+            long margin = node.due - node.earliestFinish;
+            Set<Integer> ids = tasksByDueMargin.get(margin);
+            if (ids != null) {
+                ids.remove(node.id);
+                if (ids.isEmpty()) tasksByDueMargin.remove(margin);
+            }
+        }
+    }
+}
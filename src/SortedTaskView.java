@@ -0,0 +1,245 @@
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Immutable list of tasks kept in comparator order, backed by a persistent AVL tree.
+ * with, without and replace return a new view in O(log n) and leave this one untouched: the new tree shares all
+ * but the O(log n) nodes on the changed path. get(i) is O(log n) through subtree sizes, iteration O(1) per task.
+ * Thought: TaskStore keeps one view per sort key and swaps it on every mutation, and a TaskSnapshot captures the
+ * current views as they are; the snapshot's own indexes are views too, ordered by display position. Readers iterate
+ * a sorted order without a lock, a copy or a sort, and writers never wait for them. The comparator must be total
+ * (ties broken by id or position) so that without() finds exactly one task.
+ */
+public final class SortedTaskView extends AbstractList<Task> {
+
+    private static final class Node {
+        final Task task;
+        final Node left;
+        final Node right;
+        final int height;
+        final int size;
+
+        Node(Task task, Node left, Node right) {
+            this.task = task;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    private final Comparator<Task> order;
+    private final Node root;
+
+    private SortedTaskView(Comparator<Task> order, Node root) {
+        this.order = order;
+        this.root = root;
+    }
+
+    public static SortedTaskView empty(Comparator<Task> order) {
+        return new SortedTaskView(order, null);
+    }
+
+    // Bulk build: one sort plus an O(n) balanced build, instead of n path-copying inserts
+    public static SortedTaskView of(Collection<Task> tasks, Comparator<Task> order) {
+        Task[] sorted = tasks.toArray(new Task[0]);
+        Arrays.sort(sorted, order);
+        return new SortedTaskView(order, build(sorted, 0, sorted.length));
+    }
+
+    // Bulk build from tasks already in the comparator's order (not checked): O(n), no sort
+    static SortedTaskView ofSorted(List<Task> sorted, Comparator<Task> order) {
+        return new SortedTaskView(order, build(sorted.toArray(new Task[0]), 0, sorted.size()));
+    }
+
+    public Comparator<Task> order() {
+        return order;
+    }
+
+    // Adds the task; an equal task (same sort values and id) is replaced
+    public SortedTaskView with(Task task) {
+        return new SortedTaskView(order, insert(root, task));
+    }
+
+    // Removes the task that compares equal to this one, if present
+    public SortedTaskView without(Task task) {
+        Node removed = delete(root, task);
+        return removed == root ? this : new SortedTaskView(order, removed);
+    }
+
+    // Swaps previous (may be null) for replacement; one path copy when the change keeps its position (a completion)
+    public SortedTaskView replace(Task previous, Task replacement) {
+        if (previous == null || order.compare(previous, replacement) == 0) return with(replacement);
+        return new SortedTaskView(order, insert(delete(root, previous), replacement));
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public Task get(int index) {
+        Objects.checkIndex(index, size());
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.task;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    // Number of leading tasks that are before, which must hold for a prefix of the order only; O(log n)
+    int countBefore(Predicate<Task> before) {
+        int count = 0;
+        for (Node node = root; node != null; ) {
+            if (before.test(node.task)) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    // In order, with a stack of at most the tree height
+    @Override
+    public Iterator<Task> iterator() {
+        return iterator(0, size());
+    }
+
+    // A view of [from, to); iterating it costs O(log n) to find the start, then O(1) per task like the whole view
+    @Override
+    public List<Task> subList(int from, int to) {
+        Objects.checkFromToIndex(from, to, size());
+        return new AbstractList<>() {
+            @Override
+            public Task get(int index) {
+                return SortedTaskView.this.get(from + Objects.checkIndex(index, to - from));
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+
+            @Override
+            public Iterator<Task> iterator() {
+                return SortedTaskView.this.iterator(from, to);
+            }
+        };
+    }
+
+    // Starts at position from: the path to it is pushed like the leftmost path of a full iteration
+    private Iterator<Task> iterator(int from, int to) {
+        Deque<Node> path = new ArrayDeque<>();
+        int skip = from;
+        for (Node node = root; node != null; ) {
+            int leftSize = size(node.left);
+            if (skip < leftSize) {
+                path.push(node);
+                node = node.left;
+            } else if (skip == leftSize) {
+                path.push(node);
+                break;
+            } else {
+                skip -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        int count = to - from;
+        return new Iterator<>() {
+            private int remaining = count;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public Task next() {
+                if (remaining <= 0) throw new NoSuchElementException();
+                remaining--;
+                Node node = path.pop();
+                for (Node next = node.right; next != null; next = next.left) {
+                    path.push(next);
+                }
+                return node.task;
+            }
+        };
+    }
+
+    private static Node build(Task[] sorted, int from, int to) {
+        if (from >= to) return null;
+        int mid = (from + to) >>> 1;
+        return new Node(sorted[mid], build(sorted, from, mid), build(sorted, mid + 1, to));
+    }
+
+    private Node insert(Node node, Task task) {
+        if (node == null) return new Node(task, null, null);
+        int cmp = order.compare(task, node.task);
+        if (cmp < 0) return balance(node.task, insert(node.left, task), node.right);
+        if (cmp > 0) return balance(node.task, node.left, insert(node.right, task));
+        return new Node(task, node.left, node.right);
+    }
+
+    // Returns node itself when the task is not in this subtree, so nothing is copied for a miss
+    private Node delete(Node node, Task task) {
+        if (node == null) return null;
+        int cmp = order.compare(task, node.task);
+        if (cmp < 0) {
+            Node left = delete(node.left, task);
+            return left == node.left ? node : balance(node.task, left, node.right);
+        }
+        if (cmp > 0) {
+            Node right = delete(node.right, task);
+            return right == node.right ? node : balance(node.task, node.left, right);
+        }
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+        Node successor = node.right;
+        while (successor.left != null) successor = successor.left;
+        return balance(successor.task, node.left, deleteFirst(node.right));
+    }
+
+    private static Node deleteFirst(Node node) {
+        if (node.left == null) return node.right;
+        return balance(node.task, deleteFirst(node.left), node.right);
+    }
+
+    // New node for task over left and right, with one single or double rotation if their heights differ by two
+    private static Node balance(Task task, Node left, Node right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node(left.task, left.left, new Node(task, left.right, right));
+            }
+            return new Node(left.right.task, new Node(left.task, left.left, left.right.left),
+                    new Node(task, left.right.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node(right.task, new Node(task, left, right.left), right.right);
+            }
+            return new Node(right.left.task, new Node(task, left, right.left.left),
+                    new Node(right.task, right.left.right, right.right));
+        }
+        return new Node(task, left, right);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
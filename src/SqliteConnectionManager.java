@@ -0,0 +1,132 @@
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Owns the single SQLite connection used by TaskDatabase and caches its prepared statements.
+ * Thought: opening a connection and re-preparing SQL cost more than the writes themselves at our update rates,
+ * so the connection is opened once, tuned with pragmas (WAL journal, NORMAL sync) and reused.
+ * Not thread-safe on its own; TaskDatabase serializes access by synchronizing its public methods.
+ */
+public class SqliteConnectionManager implements AutoCloseable {
+
+    static final String DB_PATH_PROPERTY = "taskmanager.db.path";
+    static final String DB_PATH_ENV = "TASKMANAGER_DB";
+    static final String DEFAULT_DB_PATH = "taskmanager.sqlite";
+
+    // Applied once per connection. WAL lets readers (other tools on the same file) proceed during our writes;
+    // NORMAL sync is durable across application crashes and only fsyncs the WAL at checkpoints.
+    private static final String[] PRAGMAS = {
+            "PRAGMA journal_mode=WAL",
+            "PRAGMA synchronous=NORMAL",
+            "PRAGMA temp_store=MEMORY",
+            "PRAGMA cache_size=-20000", // ~20 MB page cache
+            "PRAGMA busy_timeout=5000"  // Wait for other writers instead of failing with SQLITE_BUSY
+    };
+
+    private final String url;
+    private final Map<String, PreparedStatement> statementCache = new HashMap<>();
+    private Connection connection;
+
+    public SqliteConnectionManager(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Resolves the database location from -Dtaskmanager.db.path, then the TASKMANAGER_DB environment variable,
+     * then taskmanager.sqlite in the working directory.
+     */
+    public static SqliteConnectionManager fromConfiguration() {
+        return new SqliteConnectionManager("jdbc:sqlite:" + configuredPath());
+    }
+
+    // The database file fromConfiguration opens; files kept next to it (e.g. the startup snapshot) derive their path from it
+    static String configuredPath() {
+        String path = System.getProperty(DB_PATH_PROPERTY);
+        if (path == null || path.isBlank()) path = System.getenv(DB_PATH_ENV);
+        if (path == null || path.isBlank()) path = DEFAULT_DB_PATH;
+        return path;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return The shared connection, (re)opened and tuned if it is not open yet
+     */
+    public Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            statementCache.clear(); // Statements of a closed connection are unusable
+            connection = DriverManager.getConnection(url);
+            try (Statement stmt = connection.createStatement()) {
+                for (String pragma : PRAGMAS) {
+                    stmt.execute(pragma);
+                }
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Returns a cached prepared statement for the SQL, preparing it on first use.
+     * Callers must not close it; parameters are overwritten on each use.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        Connection conn = connection();
+        PreparedStatement pstmt = statementCache.get(sql);
+        if (pstmt == null || pstmt.isClosed()) {
+            pstmt = conn.prepareStatement(sql, autoGeneratedKeys);
+            statementCache.put(sql, pstmt);
+        }
+        return pstmt;
+    }
+
+    /**
+     * Runs the work in a single transaction, rolling back if it throws.
+     */
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        Connection conn = connection();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            T result = work.execute(conn);
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (PreparedStatement pstmt : statementCache.values()) {
+            try {
+                pstmt.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to close statement: " + e.getMessage());
+            }
+        }
+        statementCache.clear();
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to close database connection: " + e.getMessage());
+            }
+            connection = null;
+        }
+    }
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T execute(Connection conn) throws SQLException;
+    }
+}
@@ -1,57 +1,174 @@
-import javax.swing.*;
-import java.math.BigDecimal;
 import java.sql.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
 
-public class TaskDatabase {
-    private static final String DB_URL = "jdbc:sqlite:C:/Users/hatzp/Desktop/Programming/OCP17/TaskManager/taskmanager.sqlite";
-    private static final DateTimeFormatter DB_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+// Public methods are synchronized: they share one SQLite connection and its cached statements
+public class TaskDatabase implements AutoCloseable {
+    private static final String INSERT_TASK_SQL =
+            "INSERT INTO tasks (title, description, created_at, due_date, is_completed, category, notes, effort_millihours, priority) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_TASK_SQL =
+            "UPDATE tasks SET title = ?, description = ?, created_at = ?, due_date = ?, is_completed = ?, " +
+                    "category = ?, notes = ?, effort_millihours = ?, priority = ? WHERE id = ?";
+    private static final String INSERT_DEPENDENCY_SQL = "INSERT INTO task_dependencies (task_id, dependency_id) VALUES (?, ?)";
+    private static final String DELETE_DEPENDENCIES_SQL = "DELETE FROM task_dependencies WHERE task_id = ?";
+    private static final String DELETE_TASK_SQL = "DELETE FROM tasks WHERE id = ?";
+    private static final String SELECT_DEPENDENCIES_SQL = "SELECT task_id, dependency_id FROM task_dependencies";
+    private static final String SELECT_TASKS_SQL = "SELECT * FROM tasks";
+    private static final String SELECT_REVISION_SQL = "SELECT revision FROM task_revision WHERE id = 1";
+    private static final String SELECT_CHANGED_TASKS_SQL = "SELECT * FROM tasks WHERE revision > ?";
+    private static final String SELECT_CHANGED_DEPENDENCIES_SQL =
+            "SELECT task_id, dependency_id FROM task_dependencies WHERE task_id IN (SELECT id FROM tasks WHERE revision > ?)";
+    private static final String SELECT_TOMBSTONES_SQL = "SELECT DISTINCT task_id FROM task_tombstones WHERE revision > ?";
+    private static final String SELECT_TOMBSTONES_FROM_SQL = "SELECT tombstones_from FROM task_revision WHERE id = 1";
+    private static final String INSERT_TASK_WITH_ID_SQL =
+            "INSERT INTO tasks (id, title, description, created_at, due_date, is_completed, category, notes, effort_millihours, priority) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String MAX_TASK_ID_SQL =
+            "SELECT MAX(COALESCE((SELECT MAX(id) FROM tasks), 0), " +
+                    "COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'tasks'), 0))";
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    // Latency of each call once it holds the connection, rows written by updates, and failed calls; see TaskMetrics
+    private static final TaskMetrics.Histogram LOAD_TIME = TaskMetrics.histogram("db.loadTasks");
+    private static final TaskMetrics.Histogram LOAD_CHANGES_TIME = TaskMetrics.histogram("db.loadChangesSince");
+    private static final TaskMetrics.Histogram SAVE_TIME = TaskMetrics.histogram("db.saveTask");
+    private static final TaskMetrics.Histogram SAVE_DEPENDENCIES_TIME = TaskMetrics.histogram("db.saveDependencies");
+    private static final TaskMetrics.Histogram DELETE_TIME = TaskMetrics.histogram("db.deleteTask");
+    private static final TaskMetrics.Histogram UPDATE_TIME = TaskMetrics.histogram("db.updateTask");
+    private static final TaskMetrics.Histogram UPDATE_BATCH_TIME = TaskMetrics.histogram("db.updateTasks");
+    private static final TaskMetrics.Histogram IMPORT_TIME = TaskMetrics.histogram("db.importTasks");
+    private static final TaskMetrics.Counter ROWS_UPDATED = TaskMetrics.counter("db.rowsUpdated");
+    private static final TaskMetrics.Counter ERRORS = TaskMetrics.counter("db.errors");
+
+    private final SqliteConnectionManager connections;
+    private final TaskEventBus events; // Failures are published here and the call returns its failure value
 
     public TaskDatabase() {
+        this(SqliteConnectionManager.fromConfiguration(), new TaskEventBus());
+    }
+
+    public TaskDatabase(SqliteConnectionManager connections) {
+        this(connections, new TaskEventBus());
+    }
+
+    public TaskDatabase(SqliteConnectionManager connections, TaskEventBus events) {
+        this.connections = connections;
+        this.events = events;
         initializeDatabase();
     }
 
+    // Creates a new database or migrates an existing one to the current typed schema; without one nothing works,
+    // so this failure is thrown to the caller rather than published. A migration is published as a notice
     private void initializeDatabase() {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("CREATE TABLE IF NOT EXISTS tasks (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "title TEXT NOT NULL, " +
-                    "description TEXT, " +
-                    "created_at TEXT, " +
-                    "due_date TEXT, " +
-                    "is_completed INTEGER, " +
-                    "category TEXT, " +
-                    "notes TEXT, " +
-                    "effort TEXT, " +
-                    "priority TEXT)");
-            stmt.execute("CREATE TABLE IF NOT EXISTS task_dependencies (" +
-                    "task_id INTEGER, " +
-                    "dependency_id INTEGER, " +
-                    "FOREIGN KEY(task_id) REFERENCES tasks(id), " +
-                    "FOREIGN KEY(dependency_id) REFERENCES tasks(id))");
+        try {
+            int previousVersion = TaskSchema.migrate(connections);
+            if (previousVersion > 0 && previousVersion < TaskSchema.CURRENT_VERSION) {
+                events.publish(new TaskEvent(TaskEvent.Kind.INFO, "Migrated task database from schema version "
+                        + previousVersion + " to " + TaskSchema.CURRENT_VERSION));
+            }
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Failed to initialize database: " + e.getMessage()); // Step 13
-            throw new RuntimeException("Database initialization failed", e);
+            throw new RuntimeException("Database initialization failed: " + e.getMessage(), e);
         }
     }
 
-    public void loadTasks(List<Task> tasks) {
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            Map<Integer, List<Integer>> dependencyMap = loadDependencies(conn);
-            loadTasks(conn, dependencyMap, tasks);
+    /**
+     * Loads every task into the list.
+     * @return The change revision the loaded rows correspond to (pass it to loadChangesSince), or -1 on failure
+     */
+    public synchronized long loadTasks(List<Task> tasks) {
+        long start = System.nanoTime();
+        try {
+            return connections.inTransaction(conn -> { // One read transaction: rows and revision from the same snapshot
+                long revision = currentRevision();
+                Map<Integer, List<Integer>> dependencyMap = loadDependencies(connections.prepare(SELECT_DEPENDENCIES_SQL));
+                tasks.clear();
+                readTasks(connections.prepare(SELECT_TASKS_SQL), dependencyMap, tasks);
+                return revision;
+            });
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Failed to load tasks from database: " + e.getMessage()); // Step 13
+            reportFailure("Failed to load tasks from database", e);
             tasks.clear();
+            return -1;
+        } finally {
+            LOAD_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Rows added, changed or deleted after a revision, and the revision they bring the caller up to.
+     * reloadRequired: the deletes since then can no longer be listed (a full import cleared them), so the caller has
+     * to load everything; the lists are empty then.
+     */
+    public record TaskChanges(List<Task> changedTasks, Set<Integer> deletedIds, long revision, boolean reloadRequired) {
+    }
+
+    /**
+     * Reads only what changed since the given revision (by us or by other tools writing to the same file).
+     * @return The changes, or null on failure
+     */
+    public synchronized TaskChanges loadChangesSince(long revision) {
+        long start = System.nanoTime();
+        try {
+            return connections.inTransaction(conn -> {
+                long current = currentRevision();
+                if (current == revision) return new TaskChanges(List.of(), Set.of(), current, false);
+                try (ResultSet rs = connections.prepare(SELECT_TOMBSTONES_FROM_SQL).executeQuery()) {
+                    if (rs.next() && revision < rs.getLong(1)) return new TaskChanges(List.of(), Set.of(), current, true);
+                }
+                Set<Integer> deletedIds = new HashSet<>();
+                PreparedStatement tombstones = connections.prepare(SELECT_TOMBSTONES_SQL);
+                tombstones.setLong(1, revision);
+                try (ResultSet rs = tombstones.executeQuery()) {
+                    while (rs.next()) deletedIds.add(rs.getInt(1));
+                }
+                PreparedStatement dependencies = connections.prepare(SELECT_CHANGED_DEPENDENCIES_SQL);
+                dependencies.setLong(1, revision);
+                Map<Integer, List<Integer>> dependencyMap = loadDependencies(dependencies);
+                PreparedStatement changed = connections.prepare(SELECT_CHANGED_TASKS_SQL);
+                changed.setLong(1, revision);
+                List<Task> changedTasks = new ArrayList<>();
+                readTasks(changed, dependencyMap, changedTasks);
+                for (Task task : changedTasks) {
+                    deletedIds.remove(task.id()); // Re-inserted under the same id after a delete
+                }
+                return new TaskChanges(changedTasks, deletedIds, current, false);
+            });
+        } catch (SQLException e) {
+            reportFailure("Failed to load task changes from database", e);
+            return null;
+        } finally {
+            LOAD_CHANGES_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * @return The current change revision (what loadTasks would return right now), or -1 if it cannot be read
+     */
+    public synchronized long getRevision() {
+        try {
+            return currentRevision();
+        } catch (SQLException e) {
+            reportFailure("Failed to read the database revision", e);
+            return -1;
         }
     }
 
-    private Map<Integer, List<Integer>> loadDependencies(Connection conn) throws SQLException {
+    // Counted, then handed to the listeners without waiting for them
+    private void reportFailure(String what, Exception e) {
+        ERRORS.increment();
+        events.publish(new TaskEvent(TaskEvent.Kind.DATABASE_ERROR, what + ": " + e.getMessage(), e));
+    }
+
+    private long currentRevision() throws SQLException {
+        try (ResultSet rs = connections.prepare(SELECT_REVISION_SQL).executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private Map<Integer, List<Integer>> loadDependencies(PreparedStatement query) throws SQLException {
         Map<Integer, List<Integer>> dependencyMap = new HashMap<>();
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT task_id, dependency_id FROM task_dependencies")) {
+        try (ResultSet rs = query.executeQuery()) {
             while (rs.next()) {
                 int taskId = rs.getInt("task_id");
                 int depId = rs.getInt("dependency_id");
@@ -61,112 +178,302 @@ public class TaskDatabase {
         return dependencyMap;
     }
 
-    private void loadTasks(Connection conn, Map<Integer, List<Integer>> dependencyMap, List<Task> tasks) throws SQLException {
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT * FROM tasks")) {
-            tasks.clear();
+    private void readTasks(PreparedStatement query, Map<Integer, List<Integer>> dependencyMap, List<Task> tasks) throws SQLException {
+        try (ResultSet rs = query.executeQuery()) {
             while (rs.next()) {
-                LocalDateTime createdAt = rs.getString("created_at") != null ?
-                        LocalDateTime.parse(rs.getString("created_at"), DB_FORMATTER) : null;
-                LocalDateTime dueDate = rs.getString("due_date") != null ?
-                        LocalDateTime.parse(rs.getString("due_date"), DB_FORMATTER) : null;
-                BigDecimal effort = rs.getString("effort") != null ?
-                        new BigDecimal(rs.getString("effort")) : null;
-                String priorityStr = rs.getString("priority");
-                Task.Priority priority = priorityStr != null ? Task.Priority.valueOf(priorityStr) : Task.Priority.MEDIUM;
+                long createdAt = rs.getLong("created_at");
+                boolean hasCreatedAt = !rs.wasNull();
+                long dueDate = rs.getLong("due_date");
+                boolean hasDueDate = !rs.wasNull();
+                long effort = rs.getLong("effort_millihours");
+                boolean hasEffort = !rs.wasNull();
                 List<Integer> dependencies = dependencyMap.getOrDefault(rs.getInt("id"), Collections.emptyList());
                 tasks.add(new Task(
                         rs.getInt("id"), rs.getString("title"), rs.getString("description"),
-                        createdAt, dueDate, rs.getInt("is_completed") == 1,
-                        rs.getString("category"), rs.getString("notes"), effort, priority, dependencies
+                        hasCreatedAt ? TaskSchema.fromEpochMillis(createdAt) : null,
+                        hasDueDate ? TaskSchema.fromEpochMillis(dueDate) : null,
+                        rs.getInt("is_completed") == 1, rs.getString("category"), rs.getString("notes"),
+                        hasEffort ? TaskSchema.fromMilliHours(effort) : null,
+                        TaskSchema.priorityFromCode(rs.getInt("priority")), dependencies
                 ));
             }
         }
     }
 
-    public int saveTask(Task task) {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "INSERT INTO tasks (title, description, created_at, due_date, is_completed, category, notes, effort, priority) " +
-                             "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, task.title());
-            pstmt.setString(2, task.description());
-            pstmt.setString(3, task.createdAt() != null ? task.createdAt().format(DB_FORMATTER) : null);
-            pstmt.setString(4, task.dueDate() != null ? task.dueDate().format(DB_FORMATTER) : null);
-            pstmt.setInt(5, task.isCompleted() ? 1 : 0);
-            pstmt.setString(6, task.category());
-            pstmt.setString(7, task.notes());
-            pstmt.setString(8, task.effort() != null ? task.effort().toString() : null);
-            pstmt.setString(9, task.priority().name());
+    public synchronized int saveTask(Task task) {
+        long start = System.nanoTime();
+        try {
+            PreparedStatement pstmt = connections.prepare(INSERT_TASK_SQL, Statement.RETURN_GENERATED_KEYS);
+            bindTaskColumns(pstmt, task);
             pstmt.executeUpdate();
             try (ResultSet rs = pstmt.getGeneratedKeys()) {
                 if (rs.next()) return rs.getInt(1);
             }
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Failed to save task: " + e.getMessage()); // Step 13
+            reportFailure("Failed to save task", e);
             return -1;
+        } finally {
+            SAVE_TIME.recordSince(start);
         }
         return -1;
     }
 
-    public void saveDependencies(int taskId, List<Integer> dependencies) {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "INSERT INTO task_dependencies (task_id, dependency_id) VALUES (?, ?)")) {
+    // Returns false if the rows were not written (the failure is published)
+    public synchronized boolean saveDependencies(int taskId, List<Integer> dependencies) {
+        if (dependencies.isEmpty()) return true;
+        long start = System.nanoTime();
+        try {
+            PreparedStatement pstmt = connections.prepare(INSERT_DEPENDENCY_SQL);
             for (int depId : dependencies) {
                 pstmt.setInt(1, taskId);
                 pstmt.setInt(2, depId);
                 pstmt.addBatch();
             }
             pstmt.executeBatch();
+            return true;
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Failed to save dependencies: " + e.getMessage()); // Step 13
+            reportFailure("Failed to save dependencies", e);
+            return false;
+        } finally {
+            SAVE_DEPENDENCIES_TIME.recordSince(start);
         }
     }
 
-    public void deleteTask(int taskId) {
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM task_dependencies WHERE task_id = ?")) {
-                pstmt.setInt(1, taskId);
-                pstmt.executeUpdate();
-            }
-            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM tasks WHERE id = ?")) {
-                pstmt.setInt(1, taskId);
-                pstmt.executeUpdate();
-            }
+    public synchronized boolean deleteTask(int taskId) {
+        long start = System.nanoTime();
+        try {
+            connections.inTransaction(conn -> {
+                PreparedStatement deleteDeps = connections.prepare(DELETE_DEPENDENCIES_SQL);
+                deleteDeps.setInt(1, taskId);
+                deleteDeps.executeUpdate();
+                PreparedStatement deleteTask = connections.prepare(DELETE_TASK_SQL);
+                deleteTask.setInt(1, taskId);
+                return deleteTask.executeUpdate();
+            });
+            return true;
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Failed to delete task: " + e.getMessage()); // Step 13
-        }
-    }
-
-    public void updateTask(Task task) {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "UPDATE tasks SET title = ?, description = ?, created_at = ?, due_date = ?, is_completed = ?, " +
-                             "category = ?, notes = ?, effort = ?, priority = ? WHERE id = ?")) {
-            pstmt.setString(1, task.title());
-            pstmt.setString(2, task.description());
-            pstmt.setString(3, task.createdAt() != null ? task.createdAt().format(DB_FORMATTER) : null);
-            pstmt.setString(4, task.dueDate() != null ? task.dueDate().format(DB_FORMATTER) : null);
-            pstmt.setInt(5, task.isCompleted() ? 1 : 0);
-            pstmt.setString(6, task.category());
-            pstmt.setString(7, task.notes());
-            pstmt.setString(8, task.effort() != null ? task.effort().toString() : null);
-            pstmt.setString(9, task.priority().name());
+            reportFailure("Failed to delete task", e);
+            return false;
+        } finally {
+            DELETE_TIME.recordSince(start);
+        }
+    }
+
+    public synchronized boolean updateTask(Task task) {
+        long start = System.nanoTime();
+        try {
+            PreparedStatement pstmt = connections.prepare(UPDATE_TASK_SQL);
+            bindTaskColumns(pstmt, task);
             pstmt.setInt(10, task.id());
             pstmt.executeUpdate();
+            ROWS_UPDATED.increment();
+            return true;
+        } catch (SQLException e) {
+            reportFailure("Failed to update task", e);
+            return false;
+        } finally {
+            UPDATE_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Writes many task rows in one transaction as a single JDBC batch.
+     * @return True if every row was written, false if the transaction was rolled back
+     */
+    public synchronized boolean updateTasks(Collection<Task> tasks) {
+        return updateTasks(tasks, Collections.emptySet());
+    }
+
+    /**
+     * Writes many task rows, and replaces the dependency rows of the given ids with those of their task, in one
+     * transaction (used by the write-behind queue, so an edit's row and its edges land together or not at all).
+     * @param replaceDependencies Ids among tasks whose dependency rows are deleted and re-inserted
+     * @return True if everything was written, false if the transaction was rolled back
+     */
+    public synchronized boolean updateTasks(Collection<Task> tasks, Set<Integer> replaceDependencies) {
+        if (tasks.isEmpty()) return true;
+        long start = System.nanoTime();
+        try {
+            connections.inTransaction(conn -> {
+                PreparedStatement pstmt = connections.prepare(UPDATE_TASK_SQL);
+                for (Task task : tasks) {
+                    bindTaskColumns(pstmt, task);
+                    pstmt.setInt(10, task.id());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                if (replaceDependencies.isEmpty()) return null;
+                PreparedStatement deleteDeps = connections.prepare(DELETE_DEPENDENCIES_SQL);
+                PreparedStatement insertDep = connections.prepare(INSERT_DEPENDENCY_SQL);
+                for (Task task : tasks) {
+                    if (!replaceDependencies.contains(task.id())) continue;
+                    deleteDeps.setInt(1, task.id());
+                    deleteDeps.addBatch();
+                    for (int depId : task.dependencies()) {
+                        insertDep.setInt(1, task.id());
+                        insertDep.setInt(2, depId);
+                        insertDep.addBatch();
+                    }
+                }
+                deleteDeps.executeBatch(); // Deletes first: both batches are in the same transaction
+                return insertDep.executeBatch();
+            });
+            ROWS_UPDATED.add(tasks.size());
+            return true;
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Failed to update task: " + e.getMessage()); // Step 13
+            reportFailure("Failed to update tasks", e);
+            return false;
+        } finally {
+            UPDATE_BATCH_TIME.recordSince(start);
         }
     }
 
-    public void resetDatabase() { // Step 13: Added for CSV import fix
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
+    public synchronized void resetDatabase() { // Step 13: Added for CSV import fix
+        try (Statement stmt = connections.connection().createStatement()) {
             stmt.execute("DELETE FROM tasks");
             stmt.execute("DELETE FROM task_dependencies");
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Failed to reset database: " + e.getMessage()); // Step 13
+            reportFailure("Failed to reset database", e);
+        }
+    }
+
+    /**
+     * Replaces the whole database with the given tasks in a single transaction using JDBC batches.
+     * @param importedTasks Tasks as read from a CSV file, carrying the file's own ids
+     * @return The saved tasks with database ids and dependencies remapped to them, or null if nothing was saved
+     */
+    public synchronized List<Task> importTasks(List<Task> importedTasks) {
+        return importTasks(sink -> sink.accept(importedTasks));
+    }
+
+    /**
+     * Streaming variant: the source pushes batches of tasks (e.g. straight from the CSV parser) and each batch is
+     * written as it arrives, so persisting overlaps with parsing. Everything still commits or rolls back as one.
+     * @param source Called once with a sink; must hand every batch to the sink before returning
+     * @return The saved tasks with database ids and dependencies remapped to them, or null if nothing was saved
+     * Thought: ids are allocated up front past the AUTOINCREMENT sequence so rows can be batched instead of
+     * inserted one by one to read back generated keys. Dependency rows are written last, once every CSV id is
+     * known; dependencies on ids not present in the file are dropped.
+     */
+    public synchronized List<Task> importTasks(Consumer<Consumer<List<Task>>> source) {
+        long start = System.nanoTime();
+        try {
+            return connections.inTransaction(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DELETE FROM task_dependencies");
+                    stmt.execute("DELETE FROM tasks");
+                    // Every row is gone: one tombstone per old task would only pile up, readers older than this
+                    // revision load everything instead
+                    stmt.execute("DELETE FROM task_tombstones");
+                    stmt.execute("UPDATE task_revision SET tombstones_from = revision WHERE id = 1");
+                }
+                int firstId;
+                try (ResultSet rs = connections.prepare(MAX_TASK_ID_SQL).executeQuery()) {
+                    firstId = rs.next() ? rs.getInt(1) + 1 : 1;
+                }
+                BulkImport bulkImport = new BulkImport(connections.prepare(INSERT_TASK_WITH_ID_SQL), firstId);
+                source.accept(bulkImport);
+                return bulkImport.finish(connections.prepare(INSERT_DEPENDENCY_SQL));
+            });
+        } catch (SQLException | RuntimeException e) {
+            reportFailure("Failed to import tasks", e);
+            return null;
+        } finally {
+            IMPORT_TIME.recordSince(start);
+        }
+    }
+
+    // Sink for importTasks: inserts task rows batch by batch and remembers CSV ids for the dependency pass
+    private final class BulkImport implements Consumer<List<Task>> {
+        private final PreparedStatement insertTask;
+        private final Map<Integer, Integer> idMapping = new HashMap<>(); // CSV id -> database id
+        private final List<Task> rows = new ArrayList<>(); // Database ids, dependencies still CSV ids until finish()
+        private int nextId;
+        private int pending;
+
+        BulkImport(PreparedStatement insertTask, int firstId) {
+            this.insertTask = insertTask;
+            this.nextId = firstId;
+        }
+
+        @Override
+        public void accept(List<Task> batch) {
+            try {
+                for (Task task : batch) {
+                    if (task == null) continue; // Step 13: Skip invalid imports
+                    Task row = new Task(nextId++, task.title(), task.description(), task.createdAt(), task.dueDate(),
+                            task.isCompleted(), task.category(), task.notes(), task.effort(), task.priority(), task.dependencies());
+                    idMapping.put(task.id(), row.id());
+                    rows.add(row);
+                    insertTask.setInt(1, row.id());
+                    bindTaskColumns(insertTask, row, 2);
+                    insertTask.addBatch();
+                    if (++pending == IMPORT_BATCH_SIZE) {
+                        insertTask.executeBatch();
+                        pending = 0;
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to insert imported tasks", e);
+            }
         }
+
+        // Replaces each row by its saved version in place, so the tasks are held once rather than twice
+        List<Task> finish(PreparedStatement insertDependency) throws SQLException {
+            insertTask.executeBatch();
+            int droppedDependencies = 0;
+            int batched = 0;
+            for (ListIterator<Task> it = rows.listIterator(); it.hasNext(); ) {
+                Task row = it.next();
+                List<Integer> dependencies = new ArrayList<>(row.dependencies().size());
+                for (int csvDepId : row.dependencies()) {
+                    Integer depId = idMapping.get(csvDepId);
+                    if (depId == null) {
+                        droppedDependencies++;
+                        continue;
+                    }
+                    dependencies.add(depId);
+                    insertDependency.setInt(1, row.id());
+                    insertDependency.setInt(2, depId);
+                    insertDependency.addBatch();
+                    if (++batched == IMPORT_BATCH_SIZE) {
+                        insertDependency.executeBatch();
+                        batched = 0;
+                    }
+                }
+                it.set(new Task(row.id(), row.title(), row.description(), row.createdAt(), row.dueDate(),
+                        row.isCompleted(), row.category(), row.notes(), row.effort(), row.priority(),
+                        Collections.unmodifiableList(dependencies)));
+            }
+            insertDependency.executeBatch();
+            if (droppedDependencies > 0) {
+                events.publish(new TaskEvent(TaskEvent.Kind.INFO,
+                        "Dropped " + droppedDependencies + " dependencies on tasks missing from the import"));
+            }
+            return rows;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        connections.close();
+    }
+
+    // Binds parameters 1-9 (every column except id), shared by INSERT and UPDATE
+    private void bindTaskColumns(PreparedStatement pstmt, Task task) throws SQLException {
+        bindTaskColumns(pstmt, task, 1);
+    }
+
+    // Binds every column except id starting at parameter index first
+    private void bindTaskColumns(PreparedStatement pstmt, Task task, int first) throws SQLException {
+        pstmt.setString(first, task.title());
+        pstmt.setString(first + 1, task.description());
+        TaskSchema.setNullableLong(pstmt, first + 2, TaskSchema.toEpochMillis(task.createdAt()));
+        TaskSchema.setNullableLong(pstmt, first + 3, TaskSchema.toEpochMillis(task.dueDate()));
+        pstmt.setInt(first + 4, task.isCompleted() ? 1 : 0);
+        pstmt.setString(first + 5, task.category());
+        pstmt.setString(first + 6, task.notes());
+        TaskSchema.setNullableLong(pstmt, first + 7, TaskSchema.toMilliHours(task.effort()));
+        pstmt.setInt(first + 8, TaskSchema.priorityCode(task.priority()));
     }
-}
\ No newline at end of file
+}
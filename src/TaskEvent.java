@@ -0,0 +1,24 @@
+/**
+ * Something the engine reports to whoever listens on its TaskEventBus: a failure or a notice.
+ * @param kind What went wrong (or INFO)
+ * @param message Human-readable text, ready to show as is
+ * @param cause The underlying exception, or null
+ */
+public record TaskEvent(Kind kind, String message, Throwable cause) {
+
+    public enum Kind {
+        DATABASE_ERROR,   // A read or write failed; the call returned its failure value (-1, null, false)
+        INVALID_REQUEST,  // Rejected input: empty title, unknown id, deleting a task others depend on
+        FILE_ERROR,       // CSV import or export failed
+        PROCESSING_ERROR, // A run ended with an error, e.g. a DependencyCycleException or a timeout
+        INFO
+    }
+
+    public TaskEvent(Kind kind, String message) {
+        this(kind, message, null);
+    }
+
+    public boolean isFailure() {
+        return kind != Kind.INFO;
+    }
+}
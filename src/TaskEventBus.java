@@ -0,0 +1,88 @@
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Delivers TaskEvents to listeners on a dedicated background thread, so reporting never blocks the thread that hit
+ * the problem (a worker, the write-behind flusher, a caller holding the manager's lock).
+ * Without listeners, as when running headless, events are logged to stderr instead.
+ * Thought: the old modal dialogs stalled whichever thread reported, often while it held a lock, until someone
+ * clicked OK. Now a front end subscribes and decides itself how and on which thread to show an event (Swing: on the
+ * EDT). At most QUEUE_CAPACITY events wait for delivery; beyond that new ones are dropped and counted as
+ * "events.dropped" rather than blocking or piling up memory during a failure storm.
+ */
+public class TaskEventBus implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface Listener {
+        // Called on the event thread, one event at a time, in publishing order
+        void onEvent(TaskEvent event);
+    }
+
+    private static final int QUEUE_CAPACITY = 1000;
+    private static final TaskMetrics.Counter PUBLISHED = TaskMetrics.counter("events.published");
+    private static final TaskMetrics.Counter DROPPED = TaskMetrics.counter("events.dropped");
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ThreadPoolExecutor dispatcher;
+
+    public TaskEventBus() {
+        dispatcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "task-events");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> DROPPED.increment());
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Safe to call from any thread, never blocks; after close() the event is only logged
+    public void publish(TaskEvent event) {
+        PUBLISHED.increment();
+        if (dispatcher.isShutdown()) {
+            log(event);
+            return;
+        }
+        dispatcher.execute(() -> dispatch(event));
+    }
+
+    private void dispatch(TaskEvent event) {
+        if (listeners.isEmpty()) {
+            log(event);
+            return;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) { // One broken listener must not silence the others
+                System.err.println("Event listener failed: " + e);
+            }
+        }
+    }
+
+    private static void log(TaskEvent event) {
+        System.err.println(event.kind() + ": " + event.message());
+    }
+
+    /**
+     * Delivers what is already queued (waiting up to a second) and stops the event thread.
+     */
+    @Override
+    public void close() {
+        dispatcher.shutdown();
+        try {
+            if (!dispatcher.awaitTermination(1, TimeUnit.SECONDS)) {
+                System.err.println("Undelivered task events dropped at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
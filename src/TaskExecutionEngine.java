@@ -0,0 +1,90 @@
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executor that TaskProcessor runs task work on.
+ * Three modes are supported:
+ *  - VIRTUAL: one virtual thread per task, cheap enough to submit a 50k task batch at once
+ *  - POOL: a fixed number of platform worker threads fed from an unbounded queue
+ *  - PRIORITY: a fixed number of workers that start HIGH before MEDIUM before LOW and, within a priority, the
+ *    earliest due date first (PriorityLaneExecutor); only matters when tasks outnumber workers
+ * The mode is picked with -Dtaskmanager.executor=virtual|pool|priority and the pool size with -Dtaskmanager.poolSize=N.
+ * Thought: the default is POOL because we target Java 17, where virtual threads do not exist. They need Java 21+,
+ * so they are looked up reflectively, used only when asked for, and fall back to the pool on older runtimes
+ * instead of failing to start.
+ */
+public final class TaskExecutionEngine {
+
+    public enum Mode {
+        VIRTUAL, POOL, PRIORITY
+    }
+
+    static final String MODE_PROPERTY = "taskmanager.executor";
+    static final String POOL_SIZE_PROPERTY = "taskmanager.poolSize";
+
+    private TaskExecutionEngine() {
+    }
+
+    /**
+     * Builds the executor described by the system properties (defaults to POOL).
+     * @return A new executor; the caller owns it and is responsible for shutting it down
+     */
+    public static ExecutorService fromSystemProperties() {
+        String modeName = System.getProperty(MODE_PROPERTY, Mode.POOL.name());
+        Mode mode;
+        try {
+            mode = Mode.valueOf(modeName.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown executor mode '" + modeName + "', using " + Mode.POOL);
+            mode = Mode.POOL;
+        }
+        int poolSize = Integer.getInteger(POOL_SIZE_PROPERTY, Runtime.getRuntime().availableProcessors());
+        return create(mode, poolSize);
+    }
+
+    /**
+     * Builds an executor for the given mode.
+     * @param mode VIRTUAL, POOL or PRIORITY
+     * @param poolSize Number of worker threads for POOL and PRIORITY mode (ignored for VIRTUAL)
+     * @return A new executor
+     */
+    public static ExecutorService create(Mode mode, int poolSize) {
+        if (mode == Mode.VIRTUAL) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) return virtual;
+            System.err.println("Virtual threads are not available on this runtime, using a bounded pool");
+        }
+        if (mode == Mode.PRIORITY) return new PriorityLaneExecutor(poolSize);
+        return newBoundedPool(poolSize);
+    }
+
+    /**
+     * Fixed-size pool of daemon threads. Daemon so a running batch never keeps the JVM alive after the GUI closes.
+     */
+    public static ExecutorService newBoundedPool(int poolSize) {
+        int threads = Math.max(1, poolSize);
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "task-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), factory);
+    }
+
+    // Reflective lookup of Executors.newVirtualThreadPerTaskExecutor(), null when the runtime predates it
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
@@ -1,11 +1,18 @@
 import java.io.*;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 
 /**
@@ -19,15 +26,27 @@ public class TaskFileHandler {
     // Formatter for date/time fields in CSV, matches database format for consistency
     private static final DateTimeFormatter CSV_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    // Whole-file import/export latency, rows moved and malformed rows skipped; see TaskMetrics
+    private static final TaskMetrics.Histogram EXPORT_TIME = TaskMetrics.histogram("csv.export");
+    private static final TaskMetrics.Histogram IMPORT_TIME = TaskMetrics.histogram("csv.import");
+    private static final TaskMetrics.Counter ROWS_EXPORTED = TaskMetrics.counter("csv.rowsExported");
+    private static final TaskMetrics.Counter ROWS_IMPORTED = TaskMetrics.counter("csv.rowsImported");
+    private static final TaskMetrics.Counter ROWS_SKIPPED = TaskMetrics.counter("csv.rowsSkipped");
+
+    // Bytes of file per parse job; the chunk is extended to the end of its last line
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
     /**
      * Exports a list of tasks to a CSV file.
      * @param tasks List of tasks to export
      * @param filePath Path to the CSV file (e.g., "tasks.csv")
      * Thought: We use CSV for simplicity and readability; BufferedWriter ensures efficient writing.
+     * Always UTF-8, whatever the platform default, since importFromCsv reads it back as UTF-8.
      * Throws RuntimeException to signal failure to callers (e.g., UI) without complex error handling here.
      */
     public void exportToCsv(List<Task> tasks, String filePath){
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))){
+        long exportStart = System.nanoTime();
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, StandardCharsets.UTF_8))){
             // Write header row to define CSV structure—matches Task record fields
             writer.write("id,title,description,created_at,due_date,is_completed,category,notes,effort,priority,dependencies\n");
 
@@ -50,10 +69,13 @@ public class TaskFileHandler {
                 );
                 writer.write(line + "\n");
             }
+            ROWS_EXPORTED.add(tasks.size());
             System.out.println("Tasks exported to " + filePath);
         }catch (IOException e){
             System.err.println("Error exporting to CSV: " + e.getMessage());
             throw new RuntimeException("Failed to export tasks", e);
+        } finally {
+            EXPORT_TIME.recordSince(exportStart);
         }
     }
 
@@ -61,55 +83,178 @@ public class TaskFileHandler {
      * Imports tasks from a CSV file and returns them as a list.
      * @param filePath Path to the CSV file (e.g., "tasks.csv")
      * @return List of imported Task objects
-     * Thought: Reads CSV line-by-line, skips header, and parses fields into Task objects.
-     * Returns partial results if parsing fails mid-file to avoid total loss of data.
+     * Thought: Collects the streaming import below; malformed rows are skipped rather than ending the import.
      */
     public List<Task> importFromCsv(String filePath) {
         List<Task> importedTasks = new ArrayList<>();
-        try(BufferedReader reader = new BufferedReader(new FileReader(filePath))){
-            String line;
-            boolean firstLine = true; // skip header
-            while ((line = reader.readLine())!=null){
-                if(firstLine){
-                    firstLine = false; // skip header row
-                    continue;
+        importFromCsv(filePath, importedTasks::addAll);
+        return importedTasks;
+    }
+
+    /**
+     * Streams tasks from a CSV file to the sink in batches, in file order.
+     * @param filePath Path to the CSV file (e.g., "tasks.csv")
+     * @param sink Receives each parsed batch on the calling thread, one batch at a time
+     * @return Number of tasks imported
+     * Thought: The file is memory-mapped and cut into ~8 MB chunks on line boundaries; chunks are parsed in
+     * parallel while the caller consumes earlier ones. Only a bounded window of chunks is in flight, so the parser
+     * itself needs a bounded amount of heap whatever the file size, and the sink can persist while parsing
+     * continues. What the sink keeps is its own business: TaskDatabase's import keeps every saved task, since those
+     * are its result. If the sink throws, the chunks still being parsed are stopped and awaited before the file is
+     * closed.
+     */
+    public int importFromCsv(String filePath, Consumer<List<Task>> sink) {
+        long importStart = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            int window = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+            Deque<CompletableFuture<ParsedChunk>> inFlight = new ArrayDeque<>();
+            AtomicBoolean abandoned = new AtomicBoolean(); // Set when the import fails: parses still running stop early
+            int[] counts = new int[2]; // imported, skipped
+            try {
+                long start = 0;
+                while (start < size) {
+                    long end = findRecordEnd(channel, Math.min(start + CHUNK_SIZE, size), size);
+                    long chunkStart = start;
+                    boolean skipHeader = start == 0; // skip header row
+                    inFlight.add(CompletableFuture.supplyAsync(() ->
+                            parseChunk(channel, chunkStart, end - chunkStart, skipHeader, abandoned)));
+                    if (inFlight.size() >= window) {
+                        deliver(inFlight.poll(), sink, counts);
+                    }
+                    start = end;
+                }
+                while (!inFlight.isEmpty()) {
+                    deliver(inFlight.poll(), sink, counts);
+                }
+            } finally {
+                // Only left over when the sink or a chunk failed: the channel must outlive every parse reading it
+                abandoned.set(true);
+                for (CompletableFuture<ParsedChunk> future : inFlight) {
+                    try {
+                        future.join();
+                    } catch (RuntimeException ignored) { // The failure being thrown is the one that matters
+                    }
                 }
-                String[] fields = parseCsvLine(line); // Custom parser for CSV fields
-
-                if (fields.length != 11) continue; // Skip malformed rows
-
-                // Parse each field into appropriate type; handle nulls or empty strings
-                int id = Integer.parseInt(fields[0]); // ID as integer
-                String title = fields[1]; // Title, unescaped by parser
-                String description = fields[2];
-                LocalDateTime createdAt = fields[3].isEmpty() ? null : LocalDateTime.parse(fields[3],CSV_FORMATTER);
-                LocalDateTime dueDate = fields[4].isEmpty() ? null : LocalDateTime.parse(fields[4],CSV_FORMATTER);
-                boolean isCompleted = Integer.parseInt(fields[5]) == 1; // Boolean from 0/1 values;
-                String category = fields[6];
-                String notes = fields[7];
-                BigDecimal effort = fields[8].isEmpty() ? null : new BigDecimal(fields[8]);
-                Task.Priority priority = Task.Priority.valueOf(fields[9]); // Priority from enum name
-                List<Integer> dependencies = fields[10].isEmpty() ? Collections.emptyList() : Arrays.stream(fields[10].split(";")).map(Integer::parseInt).toList();
-
-                Task task = new Task(id, title, description, createdAt, dueDate, isCompleted,
-                        category, notes, effort, priority, dependencies);
-
-                importedTasks.add(task);
             }
-            System.out.println("Imported " + importedTasks.size() + " tasks from " + filePath);
-            return  importedTasks;
-        }catch (IOException e){
+            if (counts[1] > 0) {
+                System.err.println("Skipped " + counts[1] + " malformed rows in " + filePath);
+            }
+            ROWS_IMPORTED.add(counts[0]);
+            ROWS_SKIPPED.add(counts[1]);
+            System.out.println("Imported " + counts[0] + " tasks from " + filePath);
+            return counts[0];
+        } catch (IOException | UncheckedIOException e) {
             System.err.println("Error importing from CSV: " + e.getMessage());
             throw new RuntimeException("Failed to import tasks", e);
-        }catch (Exception e){
-            System.err.println("Error parsing CSV: " + e.getMessage());
-            // Return what we’ve parsed so far instead of failing completely
-            return importedTasks;
+        } finally {
+            IMPORT_TIME.recordSince(importStart); // Includes the time the sink spent persisting each batch
         }
     }
 
+    // Waits for the oldest chunk and hands it to the sink, so batches arrive in file order
+    private void deliver(CompletableFuture<ParsedChunk> future, Consumer<List<Task>> sink, int[] counts) {
+        ParsedChunk chunk;
+        try {
+            chunk = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        counts[0] += chunk.tasks().size();
+        counts[1] += chunk.skipped();
+        if (!chunk.tasks().isEmpty()) sink.accept(chunk.tasks());
+    }
 
+    // Returns the offset just past the first line break at or after position - 1 (or the file size)
+    private long findRecordEnd(FileChannel channel, long position, long size) throws IOException {
+        if (position >= size) return size;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long offset = position - 1;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return offset + i + 1;
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    // Parses one chunk of whole lines; runs on a pool thread and reuses its buffers for every line.
+    // Returns what it has so far once abandoned is set
+    private ParsedChunk parseChunk(FileChannel channel, long start, long length, boolean skipHeader, AtomicBoolean abandoned) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<Task> tasks = new ArrayList<>();
+        List<String> fields = new ArrayList<>(11);
+        StringBuilder field = new StringBuilder();
+        byte[] block = new byte[64 * 1024]; // Bulk copies out of the mapping are much cheaper than per-byte gets
+        byte[] line = new byte[512];
+        int lineLength = 0;
+        int skipped = 0;
+        boolean skipNext = skipHeader;
+        while (!abandoned.get()) {
+            int blockLength = Math.min(block.length, buffer.remaining());
+            boolean atEnd = blockLength == 0;
+            buffer.get(block, 0, blockLength);
+            int lineStart = 0;
+            for (int i = 0; i <= blockLength; i++) {
+                boolean lineEnd = i < blockLength ? block[i] == '\n' : atEnd;
+                if (i == blockLength || lineEnd) {
+                    int count = i - lineStart; // Append the bytes of this block that belong to the current line
+                    if (lineLength + count > line.length) line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + count));
+                    System.arraycopy(block, lineStart, line, lineLength, count);
+                    lineLength += count;
+                    lineStart = i + 1;
+                }
+                if (!lineEnd) continue;
+                if (lineLength > 0 && line[lineLength - 1] == '\r') lineLength--;
+                if (skipNext) {
+                    skipNext = false;
+                } else if (lineLength > 0) {
+                    parseCsvLine(new String(line, 0, lineLength, StandardCharsets.UTF_8), fields, field);
+                    Task task = fields.size() == 11 ? toTask(fields) : null; // Skip malformed rows
+                    if (task != null) tasks.add(task);
+                    else skipped++;
+                }
+                lineLength = 0;
+            }
+            if (atEnd) break;
+        }
+        return new ParsedChunk(tasks, skipped);
+    }
 
+    // Parse each field into appropriate type; handle nulls or empty strings. Returns null if a field is invalid
+    private Task toTask(List<String> fields) {
+        try {
+            int id = Integer.parseInt(fields.get(0)); // ID as integer
+            String title = fields.get(1); // Title, unescaped by parser
+            String description = fields.get(2);
+            LocalDateTime createdAt = fields.get(3).isEmpty() ? null : LocalDateTime.parse(fields.get(3), CSV_FORMATTER);
+            LocalDateTime dueDate = fields.get(4).isEmpty() ? null : LocalDateTime.parse(fields.get(4), CSV_FORMATTER);
+            boolean isCompleted = Integer.parseInt(fields.get(5)) == 1; // Boolean from 0/1 values;
+            String category = fields.get(6);
+            String notes = fields.get(7);
+            BigDecimal effort = fields.get(8).isEmpty() ? null : new BigDecimal(fields.get(8));
+            Task.Priority priority = Task.Priority.valueOf(fields.get(9)); // Priority from enum name
+            List<Integer> dependencies = fields.get(10).isEmpty() ? Collections.emptyList() :
+                    Arrays.stream(fields.get(10).split(";")).map(Integer::parseInt).toList();
+            return new Task(id, title, description, createdAt, dueDate, isCompleted,
+                    category, notes, effort, priority, dependencies);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private record ParsedChunk(List<Task> tasks, int skipped) {
+    }
 
     /**
      * Escapes a string for CSV by adding quotes if it contains commas or quotes.
@@ -124,16 +269,17 @@ public class TaskFileHandler {
 
 
     /**
-     * Parses a CSV line into an array of fields, handling quoted values.
+     * Parses a CSV line into fields, handling quoted values.
      * @param line CSV line to parse
-     * @return Array of field values
+     * @param fields Cleared and filled with the field values
+     * @param field Scratch builder reused across fields and lines
      * Thought: Simple parser for our needs—handles quotes but assumes well-formed input.
      * Could be replaced with a library (e.g., OpenCSV) for robustness later.
      */
-    private String[] parseCsvLine(String line){
-        List<String> fields = new ArrayList<>();
+    private void parseCsvLine(String line, List<String> fields, StringBuilder field){
+        fields.clear();
+        field.setLength(0);
         boolean inQuotes = false;
-        StringBuilder field = new StringBuilder();
         for(int i = 0; i < line.length(); i++){
             char c = line.charAt(i);
             if(c == '"' && !inQuotes){
@@ -145,12 +291,11 @@ public class TaskFileHandler {
                 inQuotes = false; // End of quoted field
             } else if (c == ',' && !inQuotes){
                 fields.add(field.toString()); // Field complete
-                field = new StringBuilder();
+                field.setLength(0);
             } else {
                 field.append(c); // Add character to current field
             }
         }
         fields.add(field.toString()); // Add last field
-        return fields.toArray(new String[0]);
     }
 }
@@ -0,0 +1,99 @@
+import javax.swing.*;
+import java.util.*;
+
+/**
+ * List model for the task views, backed by a snapshot of the manager's tasks.
+ * Thought: DefaultListModel.clear() + addElement() per task fires one event per row, which froze the EDT on
+ * large task sets. Here a refresh swaps the snapshot and fires at most two coalesced events covering only the
+ * rows that differ (common prefix and suffix are skipped), so selection and scroll position survive refreshes.
+ * Targeted refreshes replace single rows in place through an id -> row index.
+ * Rows are only rendered when visible; pair with a fixed cell height so JList never measures every row.
+ * EDT only, like every Swing model.
+ */
+public class TaskListModel extends AbstractListModel<Task> {
+    private static final long serialVersionUID = 1L;
+
+    private Task[] rows = new Task[0];
+    private Map<Integer, Integer> rowById; // Built on first targeted update, dropped when the snapshot is replaced
+
+    @Override
+    public int getSize() {
+        return rows.length;
+    }
+
+    @Override
+    public Task getElementAt(int index) {
+        return rows[index];
+    }
+
+    /**
+     * Replaces the content with the given tasks, firing events only for the changed range.
+     * @param tasks New content, copied into a new snapshot
+     */
+    public void setTasks(List<Task> tasks) {
+        Task[] oldRows = rows;
+        Task[] newRows = tasks.toArray(new Task[0]);
+        int oldSize = oldRows.length;
+        int newSize = newRows.length;
+
+        int prefix = 0;
+        int maxPrefix = Math.min(oldSize, newSize);
+        while (prefix < maxPrefix && same(oldRows[prefix], newRows[prefix])) prefix++;
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && same(oldRows[oldSize - 1 - suffix], newRows[newSize - 1 - suffix])) suffix++;
+
+        rows = newRows;
+        rowById = null;
+        int oldChanged = oldSize - prefix - suffix; // Rows [prefix, prefix + oldChanged) were replaced
+        int newChanged = newSize - prefix - suffix; // by rows [prefix, prefix + newChanged)
+        int common = Math.min(oldChanged, newChanged);
+        if (common > 0) {
+            fireContentsChanged(this, prefix, prefix + common - 1);
+        }
+        if (newChanged > oldChanged) {
+            fireIntervalAdded(this, prefix + common, prefix + newChanged - 1);
+        } else if (oldChanged > newChanged) {
+            fireIntervalRemoved(this, prefix + common, prefix + oldChanged - 1);
+        }
+    }
+
+    // The row currently showing the task with this id, or null
+    public Task findById(int taskId) {
+        Integer row = rowIndex().get(taskId);
+        return row == null ? null : rows[row];
+    }
+
+    /**
+     * Replaces the rows of the given tasks in place, matched by id.
+     * @return False (and nothing changed) if any task has no row yet; the caller then needs a full setTasks
+     */
+    public boolean updateRows(Collection<Task> changedTasks) {
+        Map<Integer, Integer> index = rowIndex();
+        for (Task task : changedTasks) {
+            if (!index.containsKey(task.id())) return false;
+        }
+        for (Task task : changedTasks) {
+            int row = index.get(task.id());
+            if (!same(rows[row], task)) {
+                rows[row] = task;
+                fireContentsChanged(this, row, row);
+            }
+        }
+        return true;
+    }
+
+    private Map<Integer, Integer> rowIndex() {
+        if (rowById == null) {
+            rowById = new HashMap<>(rows.length * 2);
+            for (int i = 0; i < rows.length; i++) {
+                rowById.put(rows[i].id(), i);
+            }
+        }
+        return rowById;
+    }
+
+    private static boolean same(Task a, Task b) {
+        return a == b || a.equals(b);
+    }
+}
@@ -1,63 +1,102 @@
-import javax.swing.*;
-import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class TaskManager {
-    private final List<Task> tasks;
+    private final TaskStore tasks; // Indexed by id, category, due date and completion
     private final TaskDatabase db;
+    private final WriteBehindQueue writes; // Batched row updates (completions, reverts, edits)
     private final TaskProcessor processor;
     private final TaskFileHandler fileHandler;
-    private Runnable updateCallback;
+    private final RefreshCoordinator refresh; // One coalesced UI refresh per frame
+    private final TaskEventBus events; // Failures and notices, delivered off the calling thread
+    private final TaskSnapshotFile snapshotFile; // Binary copy of the tasks for a fast start; used only while current
+    private long loadedRevision = -1; // Database change revision the store reflects; -1 forces a full load
+    private volatile TaskQuery.SortKey sortOrder = TaskQuery.SortKey.DISPLAY_ORDER; // Order of getAllTasks and friends
 
     public TaskManager() {
-        tasks = new ArrayList<>();
-        db = new TaskDatabase();
-        processor = new TaskProcessor(tasks, db, new TopoSortStrategy());
+        tasks = new TaskStore();
+        events = new TaskEventBus();
+        db = new TaskDatabase(SqliteConnectionManager.fromConfiguration(), events);
+        writes = WriteBehindQueue.fromSystemProperties(db);
+        processor = new TaskProcessor(tasks, writes, createStrategy());
         fileHandler = new TaskFileHandler();
+        snapshotFile = TaskSnapshotFile.fromConfiguration();
+        refresh = RefreshCoordinator.fromSystemProperties();
+        processor.setRefreshCoordinator(refresh);
+        processor.setEventBus(events);
+        TaskMetrics.registerMBean(); // Visible in JConsole/VisualVM under "taskmanager"
         reloadTasks();
     }
 
-    public void setUpdateCallback(Runnable callback) {
-        this.updateCallback = callback;
-        processor.setUpdateCallback(callback);
+    // -Dtaskmanager.strategy=dag runs the DAG dependency-driven, the default stays the single ordered batch
+    private static TaskProcessingStrategy createStrategy() {
+        return "dag".equalsIgnoreCase(System.getProperty("taskmanager.strategy")) ?
+                new DagSchedulingStrategy() : new TopoSortStrategy();
     }
 
-    public void addTask(Task task) {
+    // Listeners run on the EDT with the ids changed since the previous refresh
+    public void addRefreshListener(RefreshCoordinator.RefreshListener listener) {
+        refresh.addListener(listener);
+    }
+
+    /**
+     * Subscribes to failures (database, invalid requests, files, processing runs) and notices. The listener runs on
+     * the event thread, never on the thread that hit the problem; a UI hands the event over to its own thread.
+     * Without any listener, events are logged to stderr.
+     */
+    public void addEventListener(TaskEventBus.Listener listener) {
+        events.addListener(listener);
+    }
+
+    public void removeEventListener(TaskEventBus.Listener listener) {
+        events.removeListener(listener);
+    }
+
+    public Task getTask(int taskId) {
+        return tasks.get(taskId);
+    }
+
+    // Returns the new task's id, or -1 if it was rejected or could not be saved (the reason is published as an event)
+    public int addTask(Task task) {
         if (task == null || task.title() == null || task.title().trim().isEmpty()) { // Step 13: Input validation
-            JOptionPane.showMessageDialog(null, "Task title cannot be empty"); // Step 13
-            return;
+            events.publish(new TaskEvent(TaskEvent.Kind.INVALID_REQUEST, "Task title cannot be empty")); // Step 13
+            return -1;
         }
 
         int newId = db.saveTask(task);
-        if (newId == -1) return; // Step 13: Check save failure
+        if (newId == -1) return -1; // Step 13: Check save failure
 
         Task taskWithId = new Task(newId, task.title(), task.description(), task.createdAt(),
                 task.dueDate(), task.isCompleted(), task.category(), task.notes(), task.effort(), task.priority(), task.dependencies());
         synchronized (this) {
-            tasks.add(taskWithId);
+            tasks.put(taskWithId);
             processor.updateGraph(taskWithId); // Step 12.2: Update cached graph
         }
-        db.saveDependencies(newId, task.dependencies());
-        if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
+        if (!db.saveDependencies(newId, task.dependencies())) { // Failure already reported
+            synchronized (this) { // Not for a task deleted meanwhile: its edges would outlive it
+                if (tasks.contains(newId)) writes.enqueueWithDependencies(taskWithId); // Retried until the edges are in
+            }
+        }
+        refresh.taskChanged(newId);
+        return newId;
     }
 
     public boolean deleteTask(int taskId) {
         synchronized (this) {
-            Task task = tasks.stream().filter(t -> t.id() == taskId).findFirst().orElse(null);
-            if (task == null) {
-                JOptionPane.showMessageDialog(null, "Task with ID " + taskId + " not found"); // Step 13
+            if (!tasks.contains(taskId)) {
+                events.publish(new TaskEvent(TaskEvent.Kind.INVALID_REQUEST, "Task with ID " + taskId + " not found")); // Step 13
                 return false;
             }
             if (!isDependency(taskId)) {
-                tasks.remove(task);
+                tasks.remove(taskId);
+                writes.discard(taskId); // A queued edit would re-insert its dependency rows after the delete
                 db.deleteTask(taskId);
                 processor.updateGraphAfterDelete(taskId);
-                if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
+                refresh.taskChanged(taskId);
                 return true;
             } else {
-                JOptionPane.showMessageDialog(null, "Cannot delete task " + taskId + ": it is a dependency"); // Step 13
+                events.publish(new TaskEvent(TaskEvent.Kind.INVALID_REQUEST,
+                        "Cannot delete task " + taskId + ": it is a dependency")); // Step 13
                 return false;
             }
         }
@@ -65,145 +104,212 @@ public class TaskManager {
 
     public void updateTask(Task updatedTask) {
         synchronized (this) {
-            int index = tasks.indexOf(tasks.stream().filter(t -> t.id() == updatedTask.id()).findFirst().orElse(null));
-            if (index != -1) {
-                tasks.set(index, updatedTask);
-                db.updateTask(updatedTask);
-                db.saveDependencies(updatedTask.id(), updatedTask.dependencies());
+            if (tasks.contains(updatedTask.id())) {
+                tasks.put(updatedTask);
+                // Queued like completions so a stale completion cannot overwrite it; the edges go in the same write
+                writes.enqueueWithDependencies(updatedTask);
                 processor.updateGraph(updatedTask); // Step 12.2: Update graph on task change
-                if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
+                refresh.taskChanged(updatedTask.id());
             }
         }
     }
 
-    public void processTasks() {
-        processor.processTasks();
+    // Runs in the background; the handle cancels, observes or waits for the run
+    public ProcessingRun processTasks() {
+        return processor.processTasks();
     }
 
     public void revertTasks() {
         synchronized (this) {
-            List<Task> updatedTasks = new ArrayList<>();
-            for (Task task : tasks) {
+            List<Integer> revertedIds = new ArrayList<>();
+            for (Task task : tasks.list()) {
                 if (task.isCompleted()) {
+                    revertedIds.add(task.id());
                     Task revertedTask = new Task(task.id(), task.title(), task.description(), task.createdAt(),
                             task.dueDate(), false, task.category(), task.notes(), task.effort(), task.priority(), task.dependencies());
-                    updatedTasks.add(revertedTask);
-                    db.updateTask(revertedTask);
-                } else {
-                    updatedTasks.add(task);
+                    tasks.put(revertedTask); // Keeps its display position
+                    writes.enqueue(revertedTask);
                 }
             }
-            tasks.clear();
-            tasks.addAll(updatedTasks);
             processor.updateGraphAfterRevert(); // Step 12.2: Rebuild graph after revert
-            if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
+            refresh.tasksChanged(revertedIds);
         }
     }
 
+    // Read-only lists from the store's current snapshot in the current sort order: no lock, no copy, consistent
+    // with each other
     public List<Task> getAllTasks() {
-        return new ArrayList<>(tasks);
+        return tasks.snapshot().sortedBy(sortOrder);
     }
 
+    // A category is sorted per call, O(k log k) for its k tasks, unless in display order
     public List<Task> getTasksByCategory(String category) {
-        return category == null || category.isEmpty() ?
-                new ArrayList<>(tasks) :
-                tasks.stream().filter(t -> category.equalsIgnoreCase(t.category())).toList();
+        TaskSnapshot snapshot = tasks.snapshot();
+        TaskQuery.SortKey order = sortOrder;
+        if (category == null || category.isEmpty()) return snapshot.sortedBy(order);
+        return order == TaskQuery.SortKey.DISPLAY_ORDER ?
+                snapshot.byCategory(category) :
+                snapshot.query(TaskQuery.all().category(category).sortBy(order));
     }
 
+    // Earliest due first, via the snapshot's ordered due date index
     public List<Task> getTasksDueBefore(LocalDateTime date) {
-        return tasks.stream()
-                .filter(t -> t.dueDate() != null && t.dueDate().isBefore(date))
-                .collect(Collectors.toList());
+        return tasks.snapshot().dueBefore(date);
+    }
+
+    // Filtered, sorted page planned against the current snapshot's indexes, e.g. the first 50 open tasks by due date
+    public List<Task> query(TaskQuery query) {
+        return tasks.snapshot().query(query);
     }
 
+    // One consistent view for callers making several queries, e.g. a UI refresh
+    public TaskSnapshot getSnapshot() {
+        return tasks.snapshot();
+    }
+
+    /**
+     * Switches the order getAllTasks, getTasksByCategory, displayTasks and the CSV export return tasks in.
+     * O(1) and lock-free: the store keeps a sorted view per key up to date on every change (built by the first read
+     * in that order), and the tasks' display order itself is never rearranged. DISPLAY_ORDER goes back to
+     * insertion order.
+     */
+    public void setSortOrder(TaskQuery.SortKey order) {
+        sortOrder = Objects.requireNonNull(order);
+        refresh.allChanged();
+    }
+
+    public TaskQuery.SortKey getSortOrder() {
+        return sortOrder;
+    }
+
+    // Earliest first, no due date last
     public void sortByDueDate() {
-        synchronized (this) {
-            tasks.sort(Comparator.comparing(Task::dueDate, Comparator.nullsLast(Comparator.naturalOrder())));
-            if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
-        }
+        setSortOrder(TaskQuery.SortKey.DUE_DATE);
     }
 
+    // Least effort first, no effort last
     public void sortByEffort() {
-        synchronized (this) {
-            tasks.sort(Comparator.comparing(Task::effort, Comparator.nullsLast(Comparator.naturalOrder())));
-            if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
-        }
+        setSortOrder(TaskQuery.SortKey.EFFORT);
     }
 
+    // HIGH first, then earliest due date
     public void sortByPriority() {
-        synchronized (this) {
-            tasks.sort(Comparator.comparing(Task::priority, Comparator.reverseOrder()));
-            if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
-        }
+        setSortOrder(TaskQuery.SortKey.PRIORITY);
     }
 
     public void displayTasks() {
-        synchronized (this) {
-            tasks.forEach(System.out::println);
-        }
+        getAllTasks().forEach(System.out::println);
     }
 
-    public void exportTasksToCsv(String filename) {
+    // Returns false if the file could not be written (the reason is published as an event)
+    public boolean exportTasksToCsv(String filename) {
         try { // Step 13: Wrap file operation
-            fileHandler.exportToCsv(tasks, filename);
-            processor.updateGraphAfterRevert();
+            fileHandler.exportToCsv(getAllTasks(), filename);
+            return true;
         } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "Failed to export tasks: " + e.getMessage()); // Step 13
+            events.publish(new TaskEvent(TaskEvent.Kind.FILE_ERROR, "Failed to export tasks: " + e.getMessage(), e)); // Step 13
+            return false;
         }
     }
 
-    public void importTasksFromCsv(String filename) {
+    // Returns false if nothing was imported and the previous tasks were kept (the reason is published as an event)
+    public boolean importTasksFromCsv(String filename) {
         try { // Step 13: Wrap file operation
-            List<Task> importedTasks = fileHandler.importFromCsv(filename);
             synchronized (this) {
-                tasks.clear(); // Step 13: Fix CSV duplication
-                db.resetDatabase(); // Step 13: Wipe DB before import
-                for (Task task : importedTasks) {
-                    if (task == null) continue; // Step 13: Skip invalid imports
-                    int newId = db.saveTask(task);
-                    if (newId == -1) continue; // Step 13: Skip failed saves
-                    Task taskWithId = new Task(newId, task.title(), task.description(), task.createdAt(),
-                            task.dueDate(), task.isCompleted(), task.category(), task.notes(), task.effort(), task.priority(), task.dependencies());
-                    tasks.add(taskWithId);
-                    db.saveDependencies(newId, task.dependencies());
-                    processor.updateGraph(taskWithId); // Step 12.2: Update graph for imported tasks
-                }
-                if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
+                writes.flush(); // Queued updates must not land after the tables are replaced
+                // One transaction for the whole file, written while it is parsed;
+                // dependencies are remapped from CSV ids to database ids
+                List<Task> savedTasks = db.importTasks(sink -> fileHandler.importFromCsv(filename, sink));
+                if (savedTasks == null) return false; // Rolled back, keep what we had
+                tasks.replaceAll(savedTasks); // Step 13: Fix CSV duplication
+                loadedRevision = -1; // Every row changed: the next reload is a full one, not a delta
+                processor.updateGraphAfterRevert(); // Rebuild the graph once instead of per row
+                refresh.allChanged();
+                return true;
             }
         } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "Failed to import tasks: " + e.getMessage()); // Step 13
+            events.publish(new TaskEvent(TaskEvent.Kind.FILE_ERROR, "Failed to import tasks: " + e.getMessage(), e)); // Step 13
+            return false;
         }
     }
 
     public Set<String> getCategories() {
-        return tasks.stream()
-                .map(Task::category)
-                .filter(Objects::nonNull)
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toCollection(TreeSet::new));
+        return tasks.snapshot().categories();
+    }
+
+    // Earliest/latest times, slack, critical path and late tasks, updated as tasks change
+    public ScheduleAnalytics getScheduleAnalytics() {
+        return processor.getScheduleAnalytics();
+    }
+
+    // Database, processing and CSV counters, latencies and gauges; the same values the JMX MBean publishes
+    public TaskMetrics.MetricsSnapshot getMetrics() {
+        return TaskMetrics.snapshot();
     }
 
     private boolean isDependency(int taskId) {
-        return tasks.stream().anyMatch(t -> t.dependencies().contains(taskId));
+        return processor.hasDependents(taskId); // Reverse index lookup instead of scanning every task
     }
 
-    public void reloadTasks() {
+    // Blocks until every queued task update is written to the database
+    public void flushWrites() {
+        writes.flush();
+    }
+
+    /**
+     * Writes the tasks to the snapshot file so the next start can skip the full database load.
+     * Our own queued writes are flushed and read back first, so the file matches the revision it is stamped with.
+     */
+    public void checkpoint() {
         synchronized (this) {
-            tasks.clear();
-            db.loadTasks(tasks);
-            processor.updateGraphAfterRevert();
-            if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
+            reloadTasks();
+            if (loadedRevision >= 0) snapshotFile.write(tasks.list(), loadedRevision);
         }
     }
 
-    private void resetDatabase() { // Step 13: Helper for import
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:C:/Users/hatzp/Desktop/Programming/OCP17/TaskManager/taskmanager.sqlite");
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("DELETE FROM tasks");
-            stmt.execute("DELETE FROM task_dependencies");
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "Failed to reset database: " + e.getMessage()); // Step 13
+    // Stops the workers, writes what is still queued, saves a snapshot and closes the database connection;
+    // called from the JVM shutdown hook
+    public void shutdown() {
+        processor.shutdown();
+        writes.close();
+        checkpoint();
+        db.close();
+        events.close();
+    }
+
+    // Full load on first call (from the snapshot file if it is current), afterwards only the rows changed since the
+    // last load (by us or other tools), unless a full import in between cleared the deletes it would need
+    public void reloadTasks() {
+        synchronized (this) {
+            writes.flush(); // Read our own queued writes back
+            if (loadedRevision >= 0) {
+                TaskDatabase.TaskChanges changes = db.loadChangesSince(loadedRevision);
+                if (changes == null) return; // Failure already reported, keep what we have
+                if (!changes.reloadRequired()) {
+                    for (int taskId : changes.deletedIds()) {
+                        if (tasks.remove(taskId) != null) processor.updateGraphAfterDelete(taskId);
+                    }
+                    for (Task task : changes.changedTasks()) {
+                        tasks.put(task);
+                        processor.updateGraph(task);
+                    }
+                    loadedRevision = changes.revision();
+                    refresh.tasksChanged(changes.deletedIds());
+                    refresh.tasksChanged(changes.changedTasks().stream().map(Task::id).toList());
+                    return;
+                }
+            }
+            long revision = db.getRevision();
+            List<Task> loaded = snapshotFile.load(revision);
+            if (loaded != null) {
+                loadedRevision = revision;
+            } else {
+                loaded = new ArrayList<>();
+                loadedRevision = db.loadTasks(loaded);
+            }
+            tasks.replaceAll(loaded);
+            processor.updateGraphAfterRevert();
+            refresh.allChanged();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,236 @@
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide metrics for persistence, processing and CSV paths:
+ *  - counters (events, rows, errors)
+ *  - latency histograms with count, mean, p50, p99 and max
+ *  - gauges read on demand (in-flight tasks, ready queue depth, pending database writes)
+ * Read them with snapshot(), or over JMX as attributes of the MBean "taskmanager:type=Metrics" (e.g. in JConsole).
+ * Thought: call sites keep their Counter/Histogram in a static final field, so recording is a few atomic adds on
+ * preallocated arrays with no allocation or map lookup per sample. Histograms use log-linear buckets (8 per power
+ * of two), so percentiles are exact to within 12.5% over the whole nanosecond-to-hours range.
+ */
+public final class TaskMetrics {
+
+    static final String MBEAN_NAME = "taskmanager:type=Metrics";
+
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    private TaskMetrics() {
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, k -> new Counter());
+    }
+
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    // Registers or replaces a gauge; the supplier runs on the reading thread, so it must be cheap and thread-safe
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    // Removes the gauge only if it is still this supplier, so an owner shutting down cannot drop its successor's
+    public static void unregisterGauge(String name, LongSupplier value) {
+        GAUGES.remove(name, value);
+    }
+
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * Latency histogram in nanoseconds. Time a call with
+     * {@code long start = System.nanoTime(); ... histogram.recordSince(start);}
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        // Values below 8 get their own bucket; above, the top 3 bits after the leading one pick one of 8 sub-buckets
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int magnitude = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BUCKET_BITS
+            int shift = magnitude - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        // Largest value that falls into the bucket
+        private static long bucketUpperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        HistogramSnapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long maxValue = max.get();
+            return new HistogramSnapshot(total, total == 0 ? 0 : sum.sum() / total,
+                    percentile(counts, total, 0.50, maxValue), percentile(counts, total, 0.99, maxValue), maxValue);
+        }
+
+        private static long percentile(long[] counts, long total, double quantile, long maxValue) {
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(bucketUpperBound(i), maxValue);
+            }
+            return maxValue;
+        }
+    }
+
+    // Nanoseconds; the buckets are read one by one, so a snapshot taken under load is only approximately consistent
+    public record HistogramSnapshot(long count, long meanNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+    }
+
+    public record MetricsSnapshot(SortedMap<String, Long> counters,
+                                  SortedMap<String, HistogramSnapshot> histograms,
+                                  SortedMap<String, Long> gauges) {
+    }
+
+    public static MetricsSnapshot snapshot() {
+        SortedMap<String, Long> counters = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> counters.put(name, counter.count()));
+        SortedMap<String, HistogramSnapshot> histograms = new TreeMap<>();
+        HISTOGRAMS.forEach((name, histogram) -> histograms.put(name, histogram.snapshot()));
+        SortedMap<String, Long> gauges = new TreeMap<>();
+        GAUGES.forEach((name, gauge) -> gauges.put(name, readGauge(gauge)));
+        return new MetricsSnapshot(Collections.unmodifiableSortedMap(counters),
+                Collections.unmodifiableSortedMap(histograms), Collections.unmodifiableSortedMap(gauges));
+    }
+
+    private static long readGauge(LongSupplier gauge) {
+        try {
+            return gauge.getAsLong();
+        } catch (RuntimeException e) {
+            return -1; // A broken gauge must not break the whole snapshot
+        }
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server; calling it again is harmless.
+     * Attributes: "<counter>" and "<gauge>" as longs, "<histogram>.count|meanMicros|p50Micros|p99Micros|maxMicros".
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(new MetricsMBean(), name);
+        } catch (JMException e) {
+            System.err.println("Failed to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // Dynamic because the metric names are only known at run time
+    private static final class MetricsMBean implements DynamicMBean {
+
+        private static final String[] HISTOGRAM_FIELDS = {"count", "meanMicros", "p50Micros", "p99Micros", "maxMicros"};
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = attributes().get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            Map<String, Object> values = attributes();
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                if (values.containsKey(name)) list.add(new Attribute(name, values.get(name)));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for (String name : attributes().keySet()) {
+                infos.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+            }
+            return new MBeanInfo(TaskMetrics.class.getName(), "Task manager metrics",
+                    infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        private static Map<String, Object> attributes() {
+            MetricsSnapshot snapshot = snapshot();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.putAll(snapshot.counters());
+            values.putAll(snapshot.gauges());
+            snapshot.histograms().forEach((name, histogram) -> {
+                long[] fields = {histogram.count(), histogram.meanNanos() / 1000, histogram.p50Nanos() / 1000,
+                        histogram.p99Nanos() / 1000, histogram.maxNanos() / 1000};
+                for (int i = 0; i < HISTOGRAM_FIELDS.length; i++) {
+                    values.put(name + "." + HISTOGRAM_FIELDS[i], fields[i]);
+                }
+            });
+            return values;
+        }
+    }
+}
@@ -4,4 +4,18 @@ import java.util.function.Consumer;
 
 public interface TaskProcessingStrategy {
     void processTasks(List<Task> tasks, Map<Integer, Set<Integer>> dependencyGraph, Consumer<List<Task>> batchProcessor, Runnable updateCallback);
+
+    // Strategies that schedule task by task override this to drive the processor's executor directly
+    default void processTasks(List<Task> tasks, Map<Integer, Set<Integer>> dependencyGraph, TaskRunner runner, Runnable updateCallback) {
+        processTasks(tasks, dependencyGraph, runner::runBatch, updateCallback);
+    }
+
+    // Execution hooks TaskProcessor hands to a strategy
+    interface TaskRunner {
+        // Fire-and-forget: run an ordered batch, tasks whose dependencies are not done yet are skipped
+        void runBatch(List<Task> orderedTasks);
+
+        // Run one task on the executor; onDone receives true if the task was completed by this run
+        void submit(Task task, Consumer<Boolean> onDone);
+    }
 }
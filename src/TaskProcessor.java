@@ -1,100 +1,390 @@
-import javax.swing.*;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 public class TaskProcessor {
-    private final List<Task> tasks;
-    private final TaskDatabase db;
+    static final String RUN_TIMEOUT_PROPERTY = "taskmanager.run.timeoutMs";
+
+    private final TaskStore tasks;
+    private final WriteBehindQueue writes; // Completions are persisted in batches off the worker threads
     private final TaskProcessingStrategy strategy;
-    private Map<Integer, Set<Integer>> dependencyGraph; // Step 12.2: Cached graph
-    private Runnable updateCallback;
+    private final ExecutorService executor; // Runs task work: virtual threads, a bounded pool or priority lanes
+    private Map<Integer, Set<Integer>> dependencyGraph; // Step 12.2: Cached graph, task -> its dependencies
+    private Map<Integer, Set<Integer>> dependentsGraph; // Reverse edges, task -> tasks that depend on it
+    private RefreshCoordinator refresh; // Coalesces UI refreshes; may be null when running headless
+    private TaskEventBus events; // Receives failed runs; may be null
+    private final ScheduleAnalytics schedule = new ScheduleAnalytics(); // Critical path and due date metrics, kept in step with the graph
+    // Incomplete tasks whose dependencies are all complete, next to run first; guarded by this like the graph
+    private final TreeSet<Task> readySet = new TreeSet<>(TopoSortStrategy.PRIORITY_ORDER.thenComparingInt(Task::id));
+    private final Map<Integer, Task> readyById = new HashMap<>(); // Version held in readySet, to find it by id
+    private final Set<Integer> claimedIds = new HashSet<>(); // Taken by pollReady, kept out until they change
+    private final Object runLock = new Object();
+    private ProcessingRun currentRun; // Guarded by runLock
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>(); // Registered in TaskMetrics until shutdown()
+
+    public TaskProcessor(TaskStore tasks, WriteBehindQueue writes, TaskProcessingStrategy strategy) {
+        this(tasks, writes, strategy, TaskExecutionEngine.fromSystemProperties());
+    }
 
-    public TaskProcessor(List<Task> tasks, TaskDatabase db, TaskProcessingStrategy strategy) {
+    public TaskProcessor(TaskStore tasks, WriteBehindQueue writes, TaskProcessingStrategy strategy, ExecutorService executor) {
         this.tasks = tasks;
-        this.db = db;
+        this.writes = writes;
         this.strategy = strategy;
+        this.executor = executor;
         this.dependencyGraph = buildDependencyGraph(); // Step 12.2: Pre-compute
+        // Tasks of the current run waiting for a worker (ready, as the strategies only hand over runnable tasks) and running
+        gauges.put("tasks.ready", () -> currentProgress().queued());
+        gauges.put("tasks.inFlight", () -> currentProgress().running());
+        gauges.put("tasks.runnable", this::readyCount);
+        gauges.forEach(TaskMetrics::gauge);
+    }
+
+    public void setRefreshCoordinator(RefreshCoordinator refresh) {
+        this.refresh = refresh;
+    }
+
+    public void setEventBus(TaskEventBus events) {
+        this.events = events;
+    }
+
+    /**
+     * Starts a run in the background with the timeout from -Dtaskmanager.run.timeoutMs (0 or unset: none).
+     */
+    public ProcessingRun processTasks() {
+        long timeoutMillis = Long.getLong(RUN_TIMEOUT_PROPERTY, 0L);
+        return processTasks(timeoutMillis > 0 ? Duration.ofMillis(timeoutMillis) : null);
+    }
+
+    /**
+     * Starts a run in the background and returns its handle right away.
+     * Only one run at a time: while one is active, its handle is returned instead of starting another. After a
+     * cancel or timeout the new run waits until the previous run's interrupted tasks have returned
+     * (ProcessingRun.isFinished) before it reads the tasks, so no task is ever run by two runs at once.
+     * @param timeout Cancels the run when it expires; null for none
+     */
+    public ProcessingRun processTasks(Duration timeout) {
+        ProcessingRun run;
+        ProcessingRun previous;
+        synchronized (runLock) {
+            if (currentRun != null && !currentRun.isDone()) return currentRun;
+            previous = currentRun;
+            run = new ProcessingRun(timeout);
+            currentRun = run;
+        }
+        // One full refresh when the run ends, however it ends
+        if (refresh != null) run.whenComplete((progress, error) -> refresh.allChanged());
+        if (events != null) run.whenComplete((progress, error) -> { // A cancel was asked for, not a failure
+            if (error != null && !(error instanceof CancellationException)) {
+                events.publish(new TaskEvent(TaskEvent.Kind.PROCESSING_ERROR, "Processing stopped: " + error.getMessage(), error));
+            } else {
+                ProcessingRun.Progress last = run.progress(); // Also after a cancel, which carries no counts
+                events.publish(new TaskEvent(TaskEvent.Kind.INFO, "Processing run " + (error != null ? "cancelled" : "ended")
+                        + ": " + last.done() + " done, " + last.skipped() + " skipped, " + last.failed() + " failed"));
+            }
+        });
+        // The DAG strategy blocks until its graph drains, so it gets its own thread rather than an executor slot
+        Thread coordinator = new Thread(() -> {
+            try {
+                if (previous != null) previous.awaitFinished(); // Its tasks must not overlap with ours
+                List<Task> snapshot = tasks.list();
+                Map<Integer, Set<Integer>> graph = copyDependencyGraph();
+                Map<Integer, PriorityLaneExecutor.Urgency> urgencies = inheritedUrgencies(snapshot, graph);
+                strategy.processTasks(snapshot, graph, runnerFor(run, urgencies), null);
+            } catch (InterruptedException | RuntimeException e) {
+                run.fail(e);
+            } finally {
+                run.submissionsDone();
+            }
+        }, "task-run");
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return run;
     }
 
-    public void setUpdateCallback(Runnable callback) {
-        this.updateCallback = callback;
+    private ProcessingRun.Progress currentProgress() {
+        ProcessingRun run;
+        synchronized (runLock) {
+            run = currentRun;
+        }
+        return run == null ? new ProcessingRun.Progress(0, 0, 0, 0, 0) : run.progress();
     }
 
-    public void processTasks() {
-        strategy.processTasks(tasks, dependencyGraph, this::processTaskBatch, updateCallback);
+    // Hooks handed to the strategy: the old fire-and-forget batch, or single tasks with a completion callback;
+    // both go through the run so it can count, stop and interrupt them
+    private TaskProcessingStrategy.TaskRunner runnerFor(ProcessingRun run, Map<Integer, PriorityLaneExecutor.Urgency> urgencies) {
+        return new TaskProcessingStrategy.TaskRunner() {
+            @Override
+            public void runBatch(List<Task> orderedTasks) {
+                for (Task task : orderedTasks) {
+                    run.execute(executor, task, urgencies.get(task.id()), () -> runTask(task), completed -> { });
+                }
+            }
+
+            @Override
+            public void submit(Task task, Consumer<Boolean> onDone) {
+                run.execute(executor, task, urgencies.get(task.id()), () -> runTask(task), onDone);
+            }
+        };
+    }
+
+    /**
+     * Urgency each task runs with: the highest priority and earliest due date of itself and every incomplete task
+     * that (transitively) depends on it. O(V + E), dependents before their dependencies.
+     * Thought: without inheritance a LOW task blocking a HIGH one would wait behind every MEDIUM task, and in a
+     * topological batch a HIGH dependent would start before its LOW dependency and be skipped. With it a dependency
+     * is never less urgent than its dependents, so the lanes keep the batch's dependency order (equal urgency
+     * falls back to submission order).
+     */
+    private static Map<Integer, PriorityLaneExecutor.Urgency> inheritedUrgencies(List<Task> snapshot,
+                                                                                 Map<Integer, Set<Integer>> graph) {
+        Map<Integer, PriorityLaneExecutor.Urgency> urgencies = new HashMap<>(snapshot.size() * 2);
+        Map<Integer, Integer> pendingDependents = new HashMap<>(snapshot.size() * 2);
+        for (Task task : snapshot) {
+            urgencies.put(task.id(), PriorityLaneExecutor.Urgency.of(task));
+            if (task.isCompleted()) continue;
+            for (int depId : graph.getOrDefault(task.id(), Collections.emptySet())) {
+                pendingDependents.merge(depId, 1, Integer::sum);
+            }
+        }
+        Deque<Task> ready = new ArrayDeque<>();
+        Map<Integer, Task> byId = new HashMap<>(snapshot.size() * 2);
+        for (Task task : snapshot) {
+            byId.put(task.id(), task);
+            if (!pendingDependents.containsKey(task.id())) ready.add(task);
+        }
+        while (!ready.isEmpty()) { // Tasks on a cycle never get here and keep their own urgency
+            Task task = ready.poll();
+            if (task.isCompleted()) continue;
+            PriorityLaneExecutor.Urgency urgency = urgencies.get(task.id());
+            for (int depId : graph.getOrDefault(task.id(), Collections.emptySet())) {
+                Task dependency = byId.get(depId);
+                if (dependency == null) continue;
+                urgencies.put(depId, urgencies.get(depId).max(urgency));
+                if (pendingDependents.merge(depId, -1, Integer::sum) == 0) ready.add(dependency);
+            }
+        }
+        return urgencies;
     }
 
     // Step 12.2: Build and cache dependency graph
     private Map<Integer, Set<Integer>> buildDependencyGraph() {
         Map<Integer, Set<Integer>> graph = new HashMap<>();
-        for (Task task : tasks) {
-            graph.putIfAbsent(task.id(), new HashSet<>(task.dependencies()));
+        dependentsGraph = new HashMap<>();
+        List<Task> allTasks = tasks.list();
+        for (Task task : allTasks) {
+            graph.put(task.id(), new HashSet<>(task.dependencies())); // Replaces the empty entry if it was seen as a dependency first
             for (int depId : task.dependencies()) {
                 graph.putIfAbsent(depId, new HashSet<>());
+                dependentsGraph.computeIfAbsent(depId, k -> new HashSet<>()).add(task.id());
             }
         }
+        schedule.rebuild(allTasks);
+        rebuildReadySet(allTasks);
         return graph;
     }
 
-    // Step 12.2: Update graph on task addition/update
-    public void updateGraph(Task task) {
-        dependencyGraph.put(task.id(), new HashSet<>(task.dependencies()));
+    // Step 12.2: Update graph on task addition/update; only the edges of this task are touched
+    public synchronized void updateGraph(Task task) {
+        Set<Integer> previousDeps = dependencyGraph.put(task.id(), new HashSet<>(task.dependencies()));
+        if (previousDeps != null) {
+            for (int depId : previousDeps) {
+                removeDependent(depId, task.id());
+            }
+        }
         for (int depId : task.dependencies()) {
             dependencyGraph.putIfAbsent(depId, new HashSet<>());
+            dependentsGraph.computeIfAbsent(depId, k -> new HashSet<>()).add(task.id());
         }
+        schedule.update(task); // Re-evaluates only the tasks before and after this one
+        claimedIds.remove(task.id()); // Changed since it was polled: offered again if still runnable
+        refreshReadiness(task.id());
     }
 
-    // Step 12.2: Update graph on task deletion
-    public void updateGraphAfterDelete(int taskId) {
-        dependencyGraph.remove(taskId);
-        for (Set<Integer> deps : dependencyGraph.values()) {
-            deps.remove(taskId);
+    // Step 12.2: Update graph on task deletion; O(degree) via the dependents index instead of a walk over every node
+    public synchronized void updateGraphAfterDelete(int taskId) {
+        Set<Integer> deps = dependencyGraph.remove(taskId);
+        if (deps != null) {
+            for (int depId : deps) {
+                removeDependent(depId, taskId);
+            }
+        }
+        // Tasks that still list the id keep their edge to it, as after a full rebuild: a missing dependency blocks
+        // them, and they are found again if a task with that id comes back
+        Set<Integer> dependents = dependentsGraph.get(taskId);
+        if (dependents != null) dependencyGraph.put(taskId, new HashSet<>());
+        schedule.remove(taskId);
+        removeReady(taskId);
+        claimedIds.remove(taskId);
+        if (dependents != null) {
+            for (int dependentId : dependents) {
+                refreshReady(dependentId); // No longer runnable
+            }
         }
     }
 
     // Step 12.2: Update graph after revert
-    public void updateGraphAfterRevert() {
+    public synchronized void updateGraphAfterRevert() {
         dependencyGraph = buildDependencyGraph();
     }
 
-    void processTaskBatch(List<Task> orderedTasks) {
-        AtomicInteger activeThreads = new AtomicInteger(orderedTasks.size());
-        for (Task task : orderedTasks) {
-            Thread thread = new Thread(() -> processSingleTask(task, activeThreads));
-            thread.start();
-        }
-    }
-
-    private void processSingleTask(Task task, AtomicInteger activeThreads) {
-        synchronized (this) {
-            if (!task.isCompleted() && areDependenciesCompleted(task)) {
-                System.out.println("Processing " + task.title() + " (Effort: " + task.effort() + "h)");
-                try {
-                    Thread.sleep(task.effort().multiply(BigDecimal.valueOf(1000)).longValue());
-                    Task completedTask = task.markCompleted();
-                    tasks.set(tasks.indexOf(task), completedTask);
-                    db.updateTask(completedTask);
-                    System.out.println("Completed " + task.title());
-                    if (updateCallback != null) {
-                        SwingUtilities.invokeLater(updateCallback);
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    System.err.println("Thread interrupted: " + e.getMessage());
-                }
-            }
+    /**
+     * The next n runnable tasks (incomplete, every dependency complete), in TopoSortStrategy.PRIORITY_ORDER
+     * (HIGH first, then earliest due date), ties by id. Nothing is removed.
+     */
+    public synchronized List<Task> peekReady(int n) {
+        List<Task> next = new ArrayList<>(Math.min(Math.max(n, 0), readySet.size()));
+        for (Task task : readySet) {
+            if (next.size() >= n) break;
+            next.add(task);
         }
-        int remaining = activeThreads.decrementAndGet();
-        if (remaining == 0 && updateCallback != null) {
-            SwingUtilities.invokeLater(updateCallback);
+        return next;
+    }
+
+    /**
+     * Takes the next runnable task, for an external worker to run, or returns null if none is runnable.
+     * The task stays out of the ready set until it changes (completion, edit, reload, revert), so two workers
+     * never get the same task; a worker that gives up on it calls releaseReady.
+     */
+    public synchronized Task pollReady() {
+        Task next = readySet.pollFirst();
+        if (next == null) return null;
+        readyById.remove(next.id());
+        claimedIds.add(next.id());
+        return next;
+    }
+
+    // Offers a task taken with pollReady again, if it is still runnable
+    public synchronized void releaseReady(int taskId) {
+        if (claimedIds.remove(taskId)) refreshReady(taskId);
+    }
+
+    public synchronized int readyCount() {
+        return readySet.size();
+    }
+
+    // Live schedule metrics; safe to query from any thread
+    public ScheduleAnalytics getScheduleAnalytics() {
+        return schedule;
+    }
+
+    // Ids of the tasks that depend on taskId, O(degree)
+    public synchronized Set<Integer> getDependents(int taskId) {
+        Set<Integer> dependents = dependentsGraph.get(taskId);
+        return dependents == null ? Collections.emptySet() : new HashSet<>(dependents);
+    }
+
+    public synchronized boolean hasDependents(int taskId) {
+        Set<Integer> dependents = dependentsGraph.get(taskId);
+        return dependents != null && !dependents.isEmpty();
+    }
+
+    // Strategies read the graph on other threads while the manager keeps editing it, so they get their own copy
+    private synchronized Map<Integer, Set<Integer>> copyDependencyGraph() {
+        Map<Integer, Set<Integer>> copy = new HashMap<>(dependencyGraph.size() * 2);
+        dependencyGraph.forEach((id, deps) -> copy.put(id, new HashSet<>(deps)));
+        return copy;
+    }
+
+    private void removeDependent(int depId, int dependentId) {
+        Set<Integer> dependents = dependentsGraph.get(depId);
+        if (dependents != null) {
+            dependents.remove(dependentId);
+            if (dependents.isEmpty()) dependentsGraph.remove(depId);
+        }
+    }
+
+    // Only the store and database calls take locks; the simulated work (sleep) runs unlocked so workers overlap
+    boolean runTask(Task task) {
+        if (task.isCompleted() || !areDependenciesCompleted(task)) {
+            return false;
+        }
+        System.out.println("Processing " + task.title() + " (Effort: " + task.effort() + "h)");
+        try {
+            Thread.sleep(task.effort().multiply(BigDecimal.valueOf(1000)).longValue());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Cancelled: the run counts it as failed
+            System.err.println("Thread interrupted: " + e.getMessage());
+            return false;
+        }
+        Task completedTask = task.markCompleted();
+        if (!tasks.replace(task, completedTask)) { // Edited or deleted meanwhile: don't overwrite the newer version
+            return false;
+        }
+        writes.enqueue(completedTask);
+        updateScheduleAfterCompletion(completedTask);
+        System.out.println("Completed " + task.title());
+        if (refresh != null) {
+            refresh.taskChanged(task.id()); // Merged with other completions in the same frame
+        }
+        return true;
+    }
+
+    // Under the graph lock, and only while the store still holds this version, so a completion that races with a
+    // delete or an edit cannot bring back the old task in the schedule
+    private synchronized void updateScheduleAfterCompletion(Task completedTask) {
+        if (tasks.get(completedTask.id()) == completedTask) {
+            schedule.update(completedTask); // Done tasks take no more time
+            claimedIds.remove(completedTask.id());
+            refreshReadiness(completedTask.id());
+        }
+    }
+
+    // Ready set maintenance, all under the graph lock. Readiness is read from the store, which is updated before the
+    // graph, so a task is re-evaluated from its current state rather than from counters that could drift.
+
+    private void rebuildReadySet(List<Task> allTasks) {
+        readySet.clear();
+        readyById.clear();
+        claimedIds.clear();
+        for (Task task : allTasks) {
+            if (isRunnable(task)) addReady(task);
         }
     }
 
+    // The task itself and every task depending on it: O(dependents x their dependency count)
+    private void refreshReadiness(int taskId) {
+        refreshReady(taskId);
+        Set<Integer> dependents = dependentsGraph.get(taskId);
+        if (dependents != null) {
+            for (int dependentId : dependents) {
+                refreshReady(dependentId);
+            }
+        }
+    }
+
+    private void refreshReady(int taskId) {
+        removeReady(taskId);
+        Task task = tasks.get(taskId);
+        if (task != null && !claimedIds.contains(taskId) && isRunnable(task)) addReady(task);
+    }
+
+    private boolean isRunnable(Task task) {
+        return !task.isCompleted() && areDependenciesCompleted(task);
+    }
+
+    private void addReady(Task task) {
+        readySet.add(task);
+        readyById.put(task.id(), task);
+    }
+
+    private void removeReady(int taskId) {
+        Task previous = readyById.remove(taskId);
+        if (previous != null) readySet.remove(previous);
+    }
+
+    // Also drops this processor's gauges, which would otherwise keep it reachable from the global registry
+    public void shutdown() {
+        gauges.forEach(TaskMetrics::unregisterGauge);
+        executor.shutdownNow();
+    }
+
     private boolean areDependenciesCompleted(Task task) {
         for (int depId : task.dependencies()) {
-            Task dep = tasks.stream().filter(t -> t.id() == depId).findFirst().orElse(null);
-            if (dep == null || !dep.isCompleted()) {
+            if (!tasks.isCompleted(depId)) { // O(1) index lookup; missing tasks count as not completed
                 return false;
             }
         }
@@ -0,0 +1,309 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Filters, sort order and page of a task query, run against a TaskSnapshot:
+ * <pre>
+ *   TaskQuery.all().category("Work").completed(false).sortBy(TaskQuery.SortKey.DUE_DATE).limit(50)
+ * </pre>
+ * Filters combine with AND: category (case-insensitive), due range, priorities, completion, has dependencies, plus
+ * any number of custom predicates. Results are ordered by the sort key (nulls last), ties by id; DISPLAY_ORDER keeps
+ * the store's order. Queries are immutable: every method returns a new query, so one can be shared and refined.
+ * Thought: the planner picks the smallest snapshot index among the indexed filters and checks the other filters
+ * on that candidate list only. When the index is already in the requested order (display order, or due order for a
+ * due range sorted by due date) the scan stops as soon as the page is full; otherwise the top offset+limit tasks are
+ * kept in a bounded heap, O(n log k) with no full sort, so "first 50 of millions" never materializes the matches.
+ * An ascending due date, effort or priority sort may also walk the snapshot's sorted view of all tasks when the
+ * filters look broad enough for the page to fill early (selectivity estimated from the best index). explain()
+ * shows the chosen plan.
+ */
+public final class TaskQuery {
+
+    public enum SortKey {
+        DISPLAY_ORDER,
+        DUE_DATE,
+        PRIORITY, // HIGH first, then earliest due date
+        EFFORT,
+        CREATED_AT;
+
+        // Nulls last in both directions; ties by id so every page of the same query agrees
+        Comparator<Task> comparator(boolean descending) {
+            Comparator<Task> order = switch (this) {
+                case DISPLAY_ORDER -> throw new IllegalStateException("Display order has no comparator");
+                case DUE_DATE -> Comparator.comparing(Task::dueDate, nullsLast(descending));
+                case PRIORITY -> Comparator.comparing(Task::priority, descending ? Comparator.reverseOrder() : Comparator.naturalOrder())
+                        .thenComparing(Task::dueDate, Comparator.nullsLast(Comparator.naturalOrder()));
+                case EFFORT -> Comparator.comparing(Task::effort, nullsLast(descending));
+                case CREATED_AT -> Comparator.comparing(Task::createdAt, nullsLast(descending));
+            };
+            return order.thenComparingInt(Task::id);
+        }
+
+        private static <T extends Comparable<? super T>> Comparator<T> nullsLast(boolean descending) {
+            return Comparator.nullsLast(descending ? Comparator.<T>reverseOrder() : Comparator.<T>naturalOrder());
+        }
+    }
+
+    private static final TaskQuery ALL = new TaskQuery(null, false, null, null, null, null, null, List.of(),
+            SortKey.DISPLAY_ORDER, false, 0, Integer.MAX_VALUE);
+
+    private final String categoryKey; // TaskStore.categoryKey, or null
+    private final boolean dueFilter;
+    private final LocalDateTime dueFrom; // Inclusive, null: open
+    private final LocalDateTime dueTo; // Exclusive, null: open
+    private final Set<Task.Priority> priorities; // Null: any
+    private final Boolean completed; // Null: either
+    private final Boolean hasDependencies; // Null: either
+    private final List<Predicate<Task>> predicates;
+    private final SortKey sortKey;
+    private final boolean descending;
+    private final int offset;
+    private final int limit;
+
+    private TaskQuery(String categoryKey, boolean dueFilter, LocalDateTime dueFrom, LocalDateTime dueTo,
+                      Set<Task.Priority> priorities, Boolean completed, Boolean hasDependencies,
+                      List<Predicate<Task>> predicates, SortKey sortKey, boolean descending, int offset, int limit) {
+        this.categoryKey = categoryKey;
+        this.dueFilter = dueFilter;
+        this.dueFrom = dueFrom;
+        this.dueTo = dueTo;
+        this.priorities = priorities;
+        this.completed = completed;
+        this.hasDependencies = hasDependencies;
+        this.predicates = predicates;
+        this.sortKey = sortKey;
+        this.descending = descending;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    // Every task in display order
+    public static TaskQuery all() {
+        return ALL;
+    }
+
+    public TaskQuery category(String category) {
+        return new TaskQuery(TaskStore.categoryKey(category), dueFilter, dueFrom, dueTo, priorities, completed,
+                hasDependencies, predicates, sortKey, descending, offset, limit);
+    }
+
+    /**
+     * Tasks due in [from, to); either end may be null for an open range. Tasks without a due date never match.
+     */
+    public TaskQuery dueBetween(LocalDateTime from, LocalDateTime to) {
+        return new TaskQuery(categoryKey, true, from, to, priorities, completed, hasDependencies, predicates,
+                sortKey, descending, offset, limit);
+    }
+
+    public TaskQuery dueBefore(LocalDateTime date) {
+        return dueBetween(null, Objects.requireNonNull(date));
+    }
+
+    public TaskQuery priority(Task.Priority first, Task.Priority... more) {
+        Set<Task.Priority> accepted = EnumSet.of(first, more);
+        return new TaskQuery(categoryKey, dueFilter, dueFrom, dueTo, Collections.unmodifiableSet(accepted), completed,
+                hasDependencies, predicates, sortKey, descending, offset, limit);
+    }
+
+    public TaskQuery completed(boolean isCompleted) {
+        return new TaskQuery(categoryKey, dueFilter, dueFrom, dueTo, priorities, isCompleted, hasDependencies,
+                predicates, sortKey, descending, offset, limit);
+    }
+
+    public TaskQuery hasDependencies(boolean value) {
+        return new TaskQuery(categoryKey, dueFilter, dueFrom, dueTo, priorities, completed, value, predicates,
+                sortKey, descending, offset, limit);
+    }
+
+    // Extra condition checked on the index candidates; keep it cheap and side-effect free
+    public TaskQuery where(Predicate<Task> predicate) {
+        List<Predicate<Task>> combined = new ArrayList<>(predicates);
+        combined.add(Objects.requireNonNull(predicate));
+        return new TaskQuery(categoryKey, dueFilter, dueFrom, dueTo, priorities, completed, hasDependencies,
+                List.copyOf(combined), sortKey, descending, offset, limit);
+    }
+
+    public TaskQuery sortBy(SortKey key) {
+        return sortBy(key, false);
+    }
+
+    public TaskQuery sortBy(SortKey key, boolean isDescending) {
+        return new TaskQuery(categoryKey, dueFilter, dueFrom, dueTo, priorities, completed, hasDependencies,
+                predicates, Objects.requireNonNull(key), isDescending && key != SortKey.DISPLAY_ORDER, offset, limit);
+    }
+
+    // Skips the first n matches
+    public TaskQuery offset(int n) {
+        if (n < 0) throw new IllegalArgumentException("Offset cannot be negative: " + n);
+        return new TaskQuery(categoryKey, dueFilter, dueFrom, dueTo, priorities, completed, hasDependencies,
+                predicates, sortKey, descending, n, limit);
+    }
+
+    // Returns at most n matches
+    public TaskQuery limit(int n) {
+        if (n < 0) throw new IllegalArgumentException("Limit cannot be negative: " + n);
+        return new TaskQuery(categoryKey, dueFilter, dueFrom, dueTo, priorities, completed, hasDependencies,
+                predicates, sortKey, descending, offset, n);
+    }
+
+    public boolean matches(Task task) {
+        if (categoryKey != null && (task.category() == null || !categoryKey.equals(TaskStore.categoryKey(task.category())))) {
+            return false;
+        }
+        if (dueFilter) {
+            LocalDateTime due = task.dueDate();
+            if (due == null || (dueFrom != null && due.isBefore(dueFrom)) || (dueTo != null && !due.isBefore(dueTo))) {
+                return false;
+            }
+        }
+        if (priorities != null && !priorities.contains(task.priority())) return false;
+        if (completed != null && task.isCompleted() != completed) return false;
+        if (hasDependencies != null && task.dependencies().isEmpty() == hasDependencies) return false;
+        for (Predicate<Task> predicate : predicates) {
+            if (!predicate.test(task)) return false;
+        }
+        return true;
+    }
+
+    // How the query would run on the snapshot, e.g. "category index (1200 tasks), top 50 by DUE_DATE via bounded heap"
+    public String explain(TaskSnapshot snapshot) {
+        Plan plan = plan(snapshot);
+        String strategy;
+        if (limit == 0) strategy = "nothing to return";
+        else if (sortKey == SortKey.DISPLAY_ORDER) strategy = "ordered scan, stops when the page is full";
+        else if (plan.sortOrdered()) strategy = sortKey + "-ordered scan, stops when the page is full";
+        else if (plan.dueOrdered() && sortKey == SortKey.DUE_DATE && !descending) strategy = "due-ordered scan, stops when the page is full";
+        else if (pageEnd() >= plan.size()) strategy = "full sort of the matches by " + sortKey;
+        else strategy = "top " + pageEnd() + " by " + sortKey + " via bounded heap";
+        return plan.index() + " (" + plan.size() + " tasks), " + strategy;
+    }
+
+    List<Task> run(TaskSnapshot snapshot) {
+        if (limit == 0) return List.of();
+        Plan plan = plan(snapshot);
+        List<Task> page;
+        if (sortKey == SortKey.DISPLAY_ORDER) {
+            page = scanInOrder(plan.sources().get(0));
+        } else if (plan.sortOrdered()) {
+            page = scanInOrder(plan.sources().get(0));
+        } else if (plan.dueOrdered() && sortKey == SortKey.DUE_DATE && !descending) {
+            page = scanByDueDate(plan.sources().get(0));
+        } else {
+            page = topK(plan);
+        }
+        return Collections.unmodifiableList(page);
+    }
+
+    // Candidate lists from one index, in display order unless dueOrdered (the single list is in due date order) or
+    // sortOrdered (the single list is a sorted view in exactly the query's order)
+    private record Plan(String index, List<List<Task>> sources, int size, boolean dueOrdered, boolean sortOrdered) {
+        static Plan of(String index, List<Task> source, boolean dueOrdered) {
+            return new Plan(index, List.of(source), source.size(), dueOrdered, false);
+        }
+    }
+
+    // The smallest index wins; an ordered scan needs one list in display order, so then only those qualify
+    private Plan plan(TaskSnapshot snapshot) {
+        boolean needsDisplayOrder = sortKey == SortKey.DISPLAY_ORDER;
+        Plan best = Plan.of("full scan", snapshot.tasks(), false);
+        if (categoryKey != null) best = smaller(best, Plan.of("category index", snapshot.byCategory(categoryKey), false));
+        if (completed != null) best = smaller(best, Plan.of("completion index", snapshot.byCompletion(completed), false));
+        if (Boolean.TRUE.equals(hasDependencies)) {
+            best = smaller(best, Plan.of("dependencies index", snapshot.withDependencies(), false));
+        }
+        if (priorities != null && (priorities.size() == 1 || !needsDisplayOrder)) {
+            List<List<Task>> lists = new ArrayList<>();
+            int size = 0;
+            for (Task.Priority priority : priorities) {
+                List<Task> matches = snapshot.byPriority(priority);
+                lists.add(matches);
+                size += matches.size();
+            }
+            best = smaller(best, new Plan("priority index", lists, size, false, false));
+        }
+        if (dueFilter && !needsDisplayOrder) {
+            best = smaller(best, Plan.of("due date index", snapshot.dueBetween(dueFrom, dueTo), true));
+        }
+        if (TaskStore.SORTED_KEYS.contains(sortKey) && !descending && !best.dueOrdered()) {
+            // Walking the sorted view stops after about pageEnd() / selectivity tasks, with the selectivity
+            // estimated from the best index as if the filters were independent
+            long expectedScan = best.size() == 0 ? Long.MAX_VALUE : (long) pageEnd() * snapshot.size() / best.size();
+            if (expectedScan < best.size()) {
+                List<Task> view = snapshot.sortedBy(sortKey);
+                best = new Plan("sorted view", List.of(view), view.size(), false, true);
+            }
+        }
+        return best;
+    }
+
+    private static Plan smaller(Plan current, Plan candidate) {
+        return candidate.size() < current.size() ? candidate : current;
+    }
+
+    private int pageEnd() {
+        return (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+    }
+
+    private List<Task> scanInOrder(List<Task> source) {
+        List<Task> page = new ArrayList<>(Math.min(limit, 1024));
+        int skipped = 0;
+        for (Task task : source) {
+            if (!matches(task)) continue;
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            page.add(task);
+            if (page.size() == limit) break;
+        }
+        return page;
+    }
+
+    // Source is the due index (only planned with a due filter, so tasks without a due date never match), in due order
+    // with display order among equal dates; the page is re-sorted by id within each date, so the scan only stops at
+    // a date boundary once offset + limit matches are in
+    private List<Task> scanByDueDate(List<Task> source) {
+        int wanted = pageEnd();
+        List<Task> collected = new ArrayList<>(Math.min(wanted, 1024));
+        for (Task task : source) {
+            if (collected.size() >= wanted && task.dueDate().isAfter(collected.get(collected.size() - 1).dueDate())) break;
+            if (matches(task)) collected.add(task);
+        }
+        collected.sort(sortKey.comparator(false));
+        return slice(collected);
+    }
+
+    private List<Task> topK(Plan plan) {
+        Comparator<Task> order = sortKey.comparator(descending);
+        int wanted = pageEnd();
+        if (wanted >= plan.size()) { // The page covers every candidate: just sort the matches
+            List<Task> matches = new ArrayList<>();
+            for (List<Task> source : plan.sources()) {
+                for (Task task : source) {
+                    if (matches(task)) matches.add(task);
+                }
+            }
+            matches.sort(order);
+            return slice(matches);
+        }
+        // Max-heap of the best `wanted` so far; most candidates lose to its top and never enter it
+        PriorityQueue<Task> heap = new PriorityQueue<>(wanted + 1, order.reversed());
+        for (List<Task> source : plan.sources()) {
+            for (Task task : source) {
+                if (heap.size() == wanted && order.compare(task, heap.peek()) >= 0) continue;
+                if (!matches(task)) continue;
+                heap.add(task);
+                if (heap.size() > wanted) heap.poll();
+            }
+        }
+        List<Task> best = new ArrayList<>(heap);
+        best.sort(order);
+        return slice(best);
+    }
+
+    private List<Task> slice(List<Task> sorted) {
+        if (offset >= sorted.size()) return List.of();
+        return sorted.subList(offset, (int) Math.min(sorted.size(), (long) offset + limit));
+    }
+}
@@ -0,0 +1,259 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Versioned SQLite schema for TaskDatabase, tracked in PRAGMA user_version and migrated in place on startup.
+ *  - Version 1: original text schema (ISO timestamps, BigDecimal effort strings, enum-name priority)
+ *    plus change tracking (revision column, counter, tombstones, triggers)
+ *  - Version 2: typed columns and indexes:
+ *    created_at/due_date INTEGER epoch milliseconds (wall-clock time encoded as UTC, so no DST ambiguity),
+ *    effort_millihours INTEGER (effort in thousandths of an hour), priority INTEGER code (see priorityCode),
+ *    indexes on both dependency columns, due date, category and completion.
+ *  - Version 3: task_revision.tombstones_from, the revision before which tombstones were cleared by a full import
+ * Thought: every migration runs in its own transaction and bumps user_version at the end, so an interrupted
+ * upgrade simply runs again on the next start. New databases go through the same steps as old ones.
+ */
+final class TaskSchema {
+
+    static final int CURRENT_VERSION = 3;
+
+    // Columns whose updates count as a change of the task (everything but id and revision)
+    static final String TRACKED_COLUMNS =
+            "title, description, created_at, due_date, is_completed, category, notes, effort_millihours, priority";
+
+    private static final DateTimeFormatter V1_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+
+    private TaskSchema() {
+    }
+
+    /**
+     * Brings the database up to CURRENT_VERSION.
+     * @return The version the database had before, CURRENT_VERSION if nothing was migrated
+     */
+    static int migrate(SqliteConnectionManager connections) throws SQLException {
+        return migrate(connections, CURRENT_VERSION);
+    }
+
+    // Up to an older version only, e.g. to set up a database as an earlier release left it (SchemaMigrationCheck)
+    static int migrate(SqliteConnectionManager connections, int targetVersion) throws SQLException {
+        int version = userVersion(connections.connection());
+        int initialVersion = version;
+        if (version > CURRENT_VERSION) {
+            throw new SQLException("Database schema version " + version + " is newer than this application supports ("
+                    + CURRENT_VERSION + ")");
+        }
+        while (version < targetVersion) {
+            int target = version + 1;
+            connections.inTransaction(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    switch (target) {
+                        case 1 -> migrateToVersion1(stmt);
+                        case 2 -> migrateToVersion2(conn, stmt);
+                        case 3 -> migrateToVersion3(stmt);
+                        default -> throw new SQLException("No migration to schema version " + target);
+                    }
+                    stmt.execute("PRAGMA user_version = " + target);
+                }
+                return null;
+            });
+            version = target;
+        }
+        return initialVersion;
+    }
+
+    // Value conversions shared by TaskDatabase and the migration
+
+    static Long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime == null ? null : dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime fromEpochMillis(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    static Long toMilliHours(BigDecimal effort) {
+        return effort == null ? null : effort.movePointRight(3).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    // Effort is kept to a thousandth of an hour (3.6 seconds); finer fractions are rounded half up on write
+    static BigDecimal fromMilliHours(long milliHours) {
+        BigDecimal effort = BigDecimal.valueOf(milliHours, 3).stripTrailingZeros();
+        return effort.scale() < 0 ? effort.setScale(0) : effort; // 10, not 1E+1, in the edit field
+    }
+
+    // Explicit codes rather than ordinals so reordering the enum cannot corrupt stored data; ascending = most urgent first
+    static int priorityCode(Task.Priority priority) {
+        return switch (priority) {
+            case HIGH -> 0;
+            case MEDIUM -> 1;
+            case LOW -> 2;
+        };
+    }
+
+    static Task.Priority priorityFromCode(int code) {
+        return switch (code) {
+            case 0 -> Task.Priority.HIGH;
+            case 2 -> Task.Priority.LOW;
+            default -> Task.Priority.MEDIUM;
+        };
+    }
+
+    private static int userVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Idempotent, so databases created before versioning (user_version 0, tables already present) pass through it
+    private static void migrateToVersion1(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS tasks (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "title TEXT NOT NULL, " +
+                "description TEXT, " +
+                "created_at TEXT, " +
+                "due_date TEXT, " +
+                "is_completed INTEGER, " +
+                "category TEXT, " +
+                "notes TEXT, " +
+                "effort TEXT, " +
+                "priority TEXT)");
+        stmt.execute("CREATE TABLE IF NOT EXISTS task_dependencies (" +
+                "task_id INTEGER, " +
+                "dependency_id INTEGER, " +
+                "FOREIGN KEY(task_id) REFERENCES tasks(id), " +
+                "FOREIGN KEY(dependency_id) REFERENCES tasks(id))");
+        if (!hasColumn(stmt, "tasks", "revision")) {
+            stmt.execute("ALTER TABLE tasks ADD COLUMN revision INTEGER NOT NULL DEFAULT 0");
+        }
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_revision ON tasks(revision)");
+        stmt.execute("CREATE TABLE IF NOT EXISTS task_revision (id INTEGER PRIMARY KEY CHECK (id = 1), revision INTEGER NOT NULL)");
+        stmt.execute("INSERT OR IGNORE INTO task_revision (id, revision) VALUES (1, 0)");
+        stmt.execute("CREATE TABLE IF NOT EXISTS task_tombstones (task_id INTEGER NOT NULL, revision INTEGER NOT NULL)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_task_tombstones_revision ON task_tombstones(revision)");
+        createChangeTracking(stmt, "title, description, created_at, due_date, is_completed, category, notes, effort, priority");
+    }
+
+    /**
+     * Rebuilds tasks with typed columns (SQLite cannot change column types in place), converting every row in Java
+     * with the same parsing the application used, then adds the indexes.
+     */
+    private static void migrateToVersion2(Connection conn, Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE tasks_v2 (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "title TEXT NOT NULL, " +
+                "description TEXT, " +
+                "created_at INTEGER, " +
+                "due_date INTEGER, " +
+                "is_completed INTEGER NOT NULL DEFAULT 0, " +
+                "category TEXT, " +
+                "notes TEXT, " +
+                "effort_millihours INTEGER, " +
+                "priority INTEGER NOT NULL DEFAULT 1, " +
+                "revision INTEGER NOT NULL DEFAULT 0)");
+        try (PreparedStatement insert = conn.prepareStatement("INSERT INTO tasks_v2 (id, title, description, created_at, " +
+                "due_date, is_completed, category, notes, effort_millihours, priority, revision) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             ResultSet rs = stmt.executeQuery("SELECT id, title, description, created_at, due_date, is_completed, " +
+                     "category, notes, effort, priority, revision FROM tasks")) {
+            int pending = 0;
+            while (rs.next()) {
+                insert.setInt(1, rs.getInt("id"));
+                insert.setString(2, rs.getString("title"));
+                insert.setString(3, rs.getString("description"));
+                setNullableLong(insert, 4, parseV1Timestamp(rs.getString("created_at")));
+                setNullableLong(insert, 5, parseV1Timestamp(rs.getString("due_date")));
+                insert.setInt(6, rs.getInt("is_completed") == 1 ? 1 : 0);
+                insert.setString(7, rs.getString("category"));
+                insert.setString(8, rs.getString("notes"));
+                String effort = rs.getString("effort");
+                setNullableLong(insert, 9, effort == null || effort.isBlank() ? null : toMilliHours(new BigDecimal(effort.trim())));
+                String priority = rs.getString("priority");
+                insert.setInt(10, priorityCode(priority == null ? Task.Priority.MEDIUM : Task.Priority.valueOf(priority)));
+                insert.setLong(11, rs.getLong("revision"));
+                insert.addBatch();
+                if (++pending == MIGRATION_BATCH_SIZE) {
+                    insert.executeBatch();
+                    pending = 0;
+                }
+            }
+            insert.executeBatch();
+        }
+
+        // Keep the AUTOINCREMENT high-water mark so ids of deleted tasks are never reused
+        long sequence = 0;
+        try (ResultSet rs = stmt.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = 'tasks'")) {
+            if (rs.next()) sequence = rs.getLong(1);
+        }
+        // Triggers on task_dependencies name tasks in their bodies, which would fail the rename's schema check
+        stmt.execute("DROP TRIGGER IF EXISTS dependencies_track_insert");
+        stmt.execute("DROP TRIGGER IF EXISTS dependencies_track_delete");
+        stmt.execute("DROP TABLE tasks"); // Also drops its own triggers and indexes
+        stmt.execute("ALTER TABLE tasks_v2 RENAME TO tasks");
+        if (stmt.executeUpdate("UPDATE sqlite_sequence SET seq = MAX(seq, " + sequence + ") WHERE name = 'tasks'") == 0
+                && sequence > 0) {
+            stmt.execute("INSERT INTO sqlite_sequence (name, seq) VALUES ('tasks', " + sequence + ")"); // No rows copied
+        }
+
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_revision ON tasks(revision)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_due_date ON tasks(due_date)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_category ON tasks(category COLLATE NOCASE)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tasks_is_completed ON tasks(is_completed)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_task_dependencies_task_id ON task_dependencies(task_id)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_task_dependencies_dependency_id ON task_dependencies(dependency_id)");
+        createChangeTracking(stmt, TRACKED_COLUMNS);
+    }
+
+    // A full import deletes every row and clears the tombstones that left; a reader whose last load is older than
+    // tombstones_from cannot see those deletes and has to load everything
+    private static void migrateToVersion3(Statement stmt) throws SQLException {
+        if (!hasColumn(stmt, "task_revision", "tombstones_from")) {
+            stmt.execute("ALTER TABLE task_revision ADD COLUMN tombstones_from INTEGER NOT NULL DEFAULT 0");
+        }
+    }
+
+    /**
+     * Change tracking for delta reloads, shared with any other tool writing to the same file.
+     * Triggers bump a global revision counter on every insert, update or delete of a task or of its dependency
+     * rows, stamp the task row with the new revision, and leave a tombstone for deleted tasks.
+     * Thought: done in triggers rather than in our own statements so writes by other tools are tracked too.
+     */
+    private static void createChangeTracking(Statement stmt, String trackedColumns) throws SQLException {
+        String bump = "UPDATE task_revision SET revision = revision + 1 WHERE id = 1; ";
+        String stamp = "UPDATE tasks SET revision = (SELECT revision FROM task_revision WHERE id = 1) WHERE id = ";
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tasks_track_insert AFTER INSERT ON tasks BEGIN " +
+                bump + stamp + "NEW.id; END");
+        // Column list excludes revision so stamping a row does not re-fire the trigger
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tasks_track_update AFTER UPDATE OF " + trackedColumns + " ON tasks BEGIN " +
+                bump + stamp + "NEW.id; END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tasks_track_delete AFTER DELETE ON tasks BEGIN " + bump +
+                "INSERT INTO task_tombstones (task_id, revision) SELECT OLD.id, revision FROM task_revision WHERE id = 1; END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS dependencies_track_insert AFTER INSERT ON task_dependencies BEGIN " +
+                bump + stamp + "NEW.task_id; END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS dependencies_track_delete AFTER DELETE ON task_dependencies BEGIN " +
+                bump + stamp + "OLD.task_id; END");
+    }
+
+    private static boolean hasColumn(Statement stmt, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return true;
+            }
+        }
+        return false;
+    }
+
+    private static Long parseV1Timestamp(String text) {
+        return text == null || text.isBlank() ? null : toEpochMillis(LocalDateTime.parse(text.trim(), V1_FORMATTER));
+    }
+
+    static void setNullableLong(PreparedStatement pstmt, int index, Long value) throws SQLException {
+        if (value == null) pstmt.setNull(index, Types.INTEGER);
+        else pstmt.setLong(index, value);
+    }
+}
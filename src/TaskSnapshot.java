@@ -0,0 +1,245 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Immutable view of a TaskStore at one version: every list, map and set is read-only and never changes after
+ * construction, so any number of threads can read it without locking or copying.
+ *  - tasks: all tasks in display order
+ *  - by category (case-insensitive), each in display order
+ *  - by due date (earliest first), range queries by binary search
+ *  - by priority, by completion state, and tasks that have dependencies, each in display order
+ *  - distinct trimmed categories in alphabetical order
+ *  - all tasks sorted by due date, effort or priority (the store's SortedTaskViews, shared, not copied)
+ * TaskQuery plans its filters against these indexes (see query()).
+ * Thought: every index is a SortedTaskView, so the store publishes the next snapshot on each write with next(),
+ * in O(log n) per index plus small copies of the group maps, and the previous snapshot stays valid for whoever
+ * still reads it. Only a full replacement builds one from scratch (of()), in one pass plus the due date sort.
+ */
+public final class TaskSnapshot {
+
+    private final long version;
+    private final Comparator<Task> displayOrder; // The store's; compares tasks by display position
+    private final SortedTaskView tasks;
+    private final Map<String, SortedTaskView> tasksByCategory;
+    private final SortedTaskView tasksByDueDate; // Tasks with a due date; display order breaks ties
+    private final Map<Task.Priority, SortedTaskView> tasksByPriority;
+    private final SortedTaskView completedTasks;
+    private final SortedTaskView incompleteTasks;
+    private final SortedTaskView tasksWithDependencies;
+    private final Map<String, Integer> categoryCounts; // Trimmed display name -> tasks, for categories
+    private final SortedSet<String> categories;
+    private final Map<TaskQuery.SortKey, SortedTaskView> sortedViews = new EnumMap<>(TaskQuery.SortKey.class); // Guarded by itself
+    private final TaskStore store; // Adopts the views built from this snapshot
+
+    private TaskSnapshot(long version, Comparator<Task> displayOrder, SortedTaskView tasks,
+                         Map<String, SortedTaskView> tasksByCategory, SortedTaskView tasksByDueDate,
+                         Map<Task.Priority, SortedTaskView> tasksByPriority, SortedTaskView completedTasks,
+                         SortedTaskView incompleteTasks, SortedTaskView tasksWithDependencies,
+                         Map<String, Integer> categoryCounts, SortedSet<String> categories,
+                         Map<TaskQuery.SortKey, SortedTaskView> sortedViews, TaskStore store) {
+        this.version = version;
+        this.displayOrder = displayOrder;
+        this.tasks = tasks;
+        this.tasksByCategory = tasksByCategory;
+        this.tasksByDueDate = tasksByDueDate;
+        this.tasksByPriority = tasksByPriority;
+        this.completedTasks = completedTasks;
+        this.incompleteTasks = incompleteTasks;
+        this.tasksWithDependencies = tasksWithDependencies;
+        this.categoryCounts = categoryCounts;
+        this.categories = categories;
+        this.sortedViews.putAll(sortedViews); // The views themselves are immutable
+        this.store = store;
+    }
+
+    /**
+     * Full build, O(n) plus the due date sort.
+     * @param tasksInDisplayOrder Every task, already in displayOrder
+     */
+    static TaskSnapshot of(long version, Collection<Task> tasksInDisplayOrder, Comparator<Task> displayOrder,
+                           Map<TaskQuery.SortKey, SortedTaskView> sortedViews, TaskStore store) {
+        List<Task> all = new ArrayList<>(tasksInDisplayOrder);
+        Map<String, List<Task>> byCategory = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        List<Task> withDueDate = new ArrayList<>();
+        Map<Task.Priority, List<Task>> byPriority = new EnumMap<>(Task.Priority.class);
+        List<Task> completed = new ArrayList<>();
+        List<Task> incomplete = new ArrayList<>();
+        List<Task> withDependencies = new ArrayList<>();
+        for (Task task : all) {
+            if (task.category() != null) {
+                byCategory.computeIfAbsent(TaskStore.categoryKey(task.category()), k -> new ArrayList<>()).add(task);
+                String name = categoryName(task);
+                if (name != null) counts.merge(name, 1, Integer::sum);
+            }
+            if (task.dueDate() != null) withDueDate.add(task);
+            byPriority.computeIfAbsent(task.priority(), k -> new ArrayList<>()).add(task);
+            (task.isCompleted() ? completed : incomplete).add(task);
+            if (!task.dependencies().isEmpty()) withDependencies.add(task);
+        }
+        withDueDate.sort(Comparator.comparing(Task::dueDate)); // Stable: ties stay in display order
+        Map<String, SortedTaskView> categoryViews = new HashMap<>();
+        byCategory.forEach((key, matches) -> categoryViews.put(key, SortedTaskView.ofSorted(matches, displayOrder)));
+        Map<Task.Priority, SortedTaskView> priorityViews = new EnumMap<>(Task.Priority.class);
+        byPriority.forEach((priority, matches) -> priorityViews.put(priority, SortedTaskView.ofSorted(matches, displayOrder)));
+        return new TaskSnapshot(version, displayOrder, SortedTaskView.ofSorted(all, displayOrder), categoryViews,
+                SortedTaskView.ofSorted(withDueDate, dueOrder(displayOrder)), priorityViews,
+                SortedTaskView.ofSorted(completed, displayOrder), SortedTaskView.ofSorted(incomplete, displayOrder),
+                SortedTaskView.ofSorted(withDependencies, displayOrder), counts,
+                Collections.unmodifiableSortedSet(new TreeSet<>(counts.keySet())), sortedViews, store);
+    }
+
+    /**
+     * The snapshot after one task changed, sharing everything the change did not touch.
+     * @param previous The stored version before the change, null for an added task
+     * @param replacement The stored version after the change, null for a removed task
+     */
+    TaskSnapshot next(long nextVersion, Task previous, Task replacement, Map<TaskQuery.SortKey, SortedTaskView> views) {
+        Map<String, Integer> counts = categoryCounts;
+        SortedSet<String> names = categories;
+        String previousName = categoryName(previous);
+        String name = categoryName(replacement);
+        if (!Objects.equals(previousName, name)) {
+            counts = new HashMap<>(categoryCounts);
+            if (previousName != null) counts.computeIfPresent(previousName, (k, count) -> count == 1 ? null : count - 1);
+            if (name != null) counts.merge(name, 1, Integer::sum);
+            if (!counts.keySet().equals(categoryCounts.keySet())) {
+                names = Collections.unmodifiableSortedSet(new TreeSet<>(counts.keySet()));
+            }
+        }
+        return new TaskSnapshot(nextVersion, displayOrder,
+                update(tasks, previous, replacement, task -> true),
+                updateGroups(tasksByCategory, task -> task.category() == null ? null : TaskStore.categoryKey(task.category()),
+                        previous, replacement, HashMap::new),
+                update(tasksByDueDate, previous, replacement, task -> task.dueDate() != null),
+                updateGroups(tasksByPriority, Task::priority, previous, replacement, EnumMap::new),
+                update(completedTasks, previous, replacement, Task::isCompleted),
+                update(incompleteTasks, previous, replacement, task -> !task.isCompleted()),
+                update(tasksWithDependencies, previous, replacement, task -> !task.dependencies().isEmpty()),
+                counts, names, views, store);
+    }
+
+    private static SortedTaskView update(SortedTaskView view, Task previous, Task replacement, Predicate<Task> member) {
+        boolean was = previous != null && member.test(previous);
+        boolean is = replacement != null && member.test(replacement);
+        if (was && is) return view.replace(previous, replacement);
+        if (was) return view.without(previous);
+        return is ? view.with(replacement) : view;
+    }
+
+    // Copies the group map (a handful of entries) only when one of its views changes
+    private <K> Map<K, SortedTaskView> updateGroups(Map<K, SortedTaskView> groups, Function<Task, K> keyOf,
+                                                    Task previous, Task replacement,
+                                                    Function<Map<K, SortedTaskView>, Map<K, SortedTaskView>> copy) {
+        K previousKey = previous == null ? null : keyOf.apply(previous);
+        K key = replacement == null ? null : keyOf.apply(replacement);
+        if (previousKey == null && key == null) return groups;
+        Map<K, SortedTaskView> updated = copy.apply(groups);
+        if (previousKey != null && previousKey.equals(key)) {
+            updated.put(key, groups.get(key).replace(previous, replacement));
+            return updated;
+        }
+        if (previousKey != null) {
+            SortedTaskView remaining = groups.get(previousKey).without(previous);
+            if (remaining.isEmpty()) updated.remove(previousKey);
+            else updated.put(previousKey, remaining);
+        }
+        if (key != null) {
+            updated.put(key, groups.getOrDefault(key, SortedTaskView.empty(displayOrder)).with(replacement));
+        }
+        return updated;
+    }
+
+    private static Comparator<Task> dueOrder(Comparator<Task> displayOrder) {
+        return Comparator.comparing(Task::dueDate).thenComparing(displayOrder);
+    }
+
+    // Trimmed, non-empty category as listed by categories(), or null
+    private static String categoryName(Task task) {
+        if (task == null || task.category() == null) return null;
+        String name = task.category().trim();
+        return name.isEmpty() ? null : name;
+    }
+
+    // Store version this snapshot reflects; increases with every mutation
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    public List<Task> tasks() {
+        return tasks;
+    }
+
+    public List<Task> byCategory(String category) {
+        SortedTaskView matches = tasksByCategory.get(TaskStore.categoryKey(category));
+        return matches == null ? List.of() : matches;
+    }
+
+    // Tasks due strictly before the date, earliest first; a view of the snapshot's due date index
+    public List<Task> dueBefore(LocalDateTime date) {
+        return tasksByDueDate.subList(0, firstDueOnOrAfter(date));
+    }
+
+    // Tasks due in [from, to), earliest first; null leaves that end open. Only tasks with a due date
+    public List<Task> dueBetween(LocalDateTime from, LocalDateTime to) {
+        int start = from == null ? 0 : firstDueOnOrAfter(from);
+        int end = to == null ? tasksByDueDate.size() : firstDueOnOrAfter(to);
+        return tasksByDueDate.subList(start, Math.max(start, end));
+    }
+
+    public List<Task> byPriority(Task.Priority priority) {
+        SortedTaskView matches = tasksByPriority.get(priority);
+        return matches == null ? List.of() : matches;
+    }
+
+    public List<Task> byCompletion(boolean completed) {
+        return completed ? completedTasks : incompleteTasks;
+    }
+
+    public List<Task> withDependencies() {
+        return tasksWithDependencies;
+    }
+
+    /**
+     * All tasks in the key's ascending order (TaskQuery.SortKey.comparator), e.g. for a sorted task list.
+     * O(1) for display order and the keys in TaskStore.SORTED_KEYS, except for the first use of a key after
+     * startup or a reload, which sorts once on the calling thread and hands the view to the store; other keys are
+     * sorted on each call.
+     */
+    public List<Task> sortedBy(TaskQuery.SortKey key) {
+        if (key == TaskQuery.SortKey.DISPLAY_ORDER) return tasks;
+        if (!TaskStore.SORTED_KEYS.contains(key)) return query(TaskQuery.all().sortBy(key));
+        synchronized (sortedViews) { // Readers of this snapshot share one sort; the store's lock is not held
+            SortedTaskView view = sortedViews.get(key);
+            if (view == null) {
+                view = SortedTaskView.of(tasks, key.comparator(false));
+                sortedViews.put(key, view);
+                store.adoptSortedView(key, view, version);
+            }
+            return view;
+        }
+    }
+
+    /**
+     * Runs the query against this snapshot's indexes.
+     * @return The requested page, read-only
+     */
+    public List<Task> query(TaskQuery query) {
+        return query.run(this);
+    }
+
+    // O(log n) through the due date view
+    private int firstDueOnOrAfter(LocalDateTime date) {
+        return tasksByDueDate.countBefore(task -> task.dueDate().isBefore(date));
+    }
+
+    public SortedSet<String> categories() {
+        return categories;
+    }
+}
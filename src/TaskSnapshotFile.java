@@ -0,0 +1,228 @@
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary copy of every task, written at shutdown or checkpoint, so startup can skip the full SQLite load.
+ * Layout, big-endian:
+ *  - header: magic "TSNP", format version, schema version, database revision (long), task count
+ *  - one record per task, in display order: byte length, then the record
+ *  - trailer: CRC32 of the records
+ * Record: id, flags (completed, priority code, which of the nullable fields are present), created/due as epoch
+ * millis, effort in milli-hours, title/description/category/notes as byte length (-1 for null) + UTF-8, dependency
+ * count + ids. Values are the same integers the typed schema stores, so loading needs no text parsing.
+ * Thought: the file is only used when its revision equals the database's, i.e. nothing was written since; any change
+ * by us or another tool makes it stale and startup falls back to SQLite. It is memory-mapped and decoded straight
+ * from the mapping; the CRC and the record lengths catch a truncated or damaged file, which is then ignored too.
+ * Location: -Dtaskmanager.snapshot.path, default the database path plus ".snapshot".
+ */
+public class TaskSnapshotFile {
+
+    static final String PATH_PROPERTY = "taskmanager.snapshot.path";
+
+    private static final int MAGIC = 0x54534E50; // "TSNP"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 4;
+    private static final int NULL_STRING = -1;
+
+    private static final int COMPLETED = 1;
+    private static final int PRIORITY_SHIFT = 1; // Two bits, TaskSchema.priorityCode
+    private static final int HAS_CREATED_AT = 1 << 3;
+    private static final int HAS_DUE_DATE = 1 << 4;
+    private static final int HAS_EFFORT = 1 << 5;
+
+    private static final TaskMetrics.Histogram LOAD_TIME = TaskMetrics.histogram("snapshot.load");
+    private static final TaskMetrics.Histogram WRITE_TIME = TaskMetrics.histogram("snapshot.write");
+
+    private final Path path; // Null: snapshots disabled
+
+    public TaskSnapshotFile(Path path) {
+        this.path = path;
+    }
+
+    // Disabled for in-memory databases, which start empty anyway
+    public static TaskSnapshotFile fromConfiguration() {
+        String path = System.getProperty(PATH_PROPERTY);
+        if (path == null || path.isBlank()) {
+            String dbPath = SqliteConnectionManager.configuredPath();
+            if (dbPath.startsWith(":memory:") || dbPath.contains("mode=memory")) return new TaskSnapshotFile(null);
+            path = dbPath + ".snapshot";
+        }
+        return new TaskSnapshotFile(Path.of(path));
+    }
+
+    /**
+     * Reads the snapshot if it was taken at exactly the given database revision.
+     * @return The tasks in the order they were written, or null if there is no usable snapshot (missing, stale,
+     * another format or schema version, damaged); the caller then loads from the database
+     */
+    public List<Task> load(long revision) {
+        if (path == null || revision < 0 || !Files.isRegularFile(path)) return null;
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 4 || size > Integer.MAX_VALUE) return null; // One mapping holds ~10M tasks
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || buffer.getInt() != TaskSchema.CURRENT_VERSION || buffer.getLong() != revision) {
+                return null;
+            }
+            int count = buffer.getInt();
+            int trailer = (int) size - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER_BYTES, trailer - HEADER_BYTES));
+            if ((int) crc.getValue() != buffer.getInt(trailer)) {
+                System.err.println("Ignoring damaged task snapshot " + path);
+                return null;
+            }
+            List<Task> tasks = new ArrayList<>(count);
+            Decoder decoder = new Decoder(buffer);
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                if (length < 0 || end > trailer) return null;
+                tasks.add(decoder.readTask());
+                if (buffer.position() != end) return null;
+            }
+            return buffer.position() == trailer ? tasks : null;
+        } catch (IOException | RuntimeException e) { // Unreadable or malformed: not worth failing startup over
+            System.err.println("Ignoring unreadable task snapshot " + path + ": " + e);
+            return null;
+        } finally {
+            LOAD_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Writes the tasks as the snapshot of the given revision, replacing the previous one atomically
+     * (a crash mid-write leaves the old file, which is then merely stale).
+     */
+    public void write(List<Task> tasks, long revision) {
+        if (path == null || revision < 0) return;
+        long start = System.nanoTime();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temp)) {
+                DataOutputStream header = new DataOutputStream(file);
+                header.writeInt(MAGIC);
+                header.writeInt(FORMAT_VERSION);
+                header.writeInt(TaskSchema.CURRENT_VERSION);
+                header.writeLong(revision);
+                header.writeInt(tasks.size());
+                CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+                DataOutputStream records = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+                ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+                DataOutputStream record = new DataOutputStream(recordBytes);
+                for (Task task : tasks) {
+                    recordBytes.reset();
+                    writeTask(record, task);
+                    records.writeInt(recordBytes.size());
+                    recordBytes.writeTo(records);
+                }
+                records.flush();
+                header.writeInt((int) checked.getChecksum().getValue()); // Straight to the file, outside the CRC
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to write task snapshot " + path + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Best effort: a leftover temp file is overwritten next time
+            }
+        } finally {
+            WRITE_TIME.recordSince(start);
+        }
+    }
+
+    private static void writeTask(DataOutputStream out, Task task) throws IOException {
+        Long createdAt = TaskSchema.toEpochMillis(task.createdAt());
+        Long dueDate = TaskSchema.toEpochMillis(task.dueDate());
+        Long effort = TaskSchema.toMilliHours(task.effort());
+        int flags = (task.isCompleted() ? COMPLETED : 0)
+                | TaskSchema.priorityCode(task.priority()) << PRIORITY_SHIFT
+                | (createdAt != null ? HAS_CREATED_AT : 0)
+                | (dueDate != null ? HAS_DUE_DATE : 0)
+                | (effort != null ? HAS_EFFORT : 0);
+        out.writeInt(task.id());
+        out.writeByte(flags);
+        if (createdAt != null) out.writeLong(createdAt);
+        if (dueDate != null) out.writeLong(dueDate);
+        if (effort != null) out.writeLong(effort);
+        writeString(out, task.title());
+        writeString(out, task.description());
+        writeString(out, task.category());
+        writeString(out, task.notes());
+        out.writeInt(task.dependencies().size());
+        for (int depId : task.dependencies()) {
+            out.writeInt(depId);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Reads records from the mapping; repeated categories and empty strings share one String instance
+    private static final class Decoder {
+        private final ByteBuffer buffer;
+        private final Map<String, String> categories = new HashMap<>();
+        private byte[] scratch = new byte[256];
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        Task readTask() {
+            int id = buffer.getInt();
+            int flags = buffer.get();
+            long createdAt = (flags & HAS_CREATED_AT) != 0 ? buffer.getLong() : 0;
+            long dueDate = (flags & HAS_DUE_DATE) != 0 ? buffer.getLong() : 0;
+            long effort = (flags & HAS_EFFORT) != 0 ? buffer.getLong() : 0;
+            String title = readString();
+            String description = readString();
+            String category = readString();
+            if (category != null) category = categories.computeIfAbsent(category, c -> c);
+            String notes = readString();
+            int dependencyCount = buffer.getInt();
+            List<Integer> dependencies;
+            if (dependencyCount == 0) {
+                dependencies = Collections.emptyList();
+            } else {
+                Integer[] ids = new Integer[dependencyCount];
+                for (int i = 0; i < dependencyCount; i++) {
+                    ids[i] = buffer.getInt();
+                }
+                dependencies = List.of(ids);
+            }
+            BigDecimal effortHours = (flags & HAS_EFFORT) != 0 ? TaskSchema.fromMilliHours(effort) : null;
+            return new Task(id, title, description,
+                    (flags & HAS_CREATED_AT) != 0 ? TaskSchema.fromEpochMillis(createdAt) : null,
+                    (flags & HAS_DUE_DATE) != 0 ? TaskSchema.fromEpochMillis(dueDate) : null,
+                    (flags & COMPLETED) != 0, category, notes, effortHours,
+                    TaskSchema.priorityFromCode(flags >> PRIORITY_SHIFT & 3), dependencies);
+        }
+
+        private String readString() {
+            int length = buffer.getInt();
+            if (length == NULL_STRING) return null;
+            if (length == 0) return "";
+            if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.*;
+
+/**
+ * In-memory task store shared by TaskManager and TaskProcessor.
+ * Primary index: id -> task (O(1)), iterated in display order.
+ * Secondary indexes, kept in step with every mutation:
+ *  - completion state -> task ids
+ *  - a SortedTaskView per SORTED_KEYS key (due date, effort, priority), built by the first reader that needs it
+ *    (see adoptSortedView) and from then on replaced in O(log n) per mutation; a full replacement drops them
+ *    again rather than sorting eagerly
+ *  - the published TaskSnapshot, whose indexes (category, due date, priority, ...) every mutation advances
+ * Thought: replaces the plain ArrayList whose lookups by id were full scans. All methods are synchronized on the
+ * store itself. TaskManager (its own monitor, for multi-step edits) and TaskProcessor (its own monitor, for the
+ * graph and ready set) keep their locks; the store's lock is always the innermost one and never calls out while
+ * held, so the three cannot deadlock, and a compound check-then-write uses replace() rather than a caller's lock.
+ * Read-mostly callers use snapshot() instead: the immutable TaskSnapshot of the latest write, read without taking
+ * the store's lock. Writers publish it themselves, in O(log n) per write, so a reader never rebuilds anything.
+ */
+public class TaskStore {
+    // Sort orders kept as persistent views; other TaskQuery sort keys are sorted per query
+    static final Set<TaskQuery.SortKey> SORTED_KEYS =
+            Collections.unmodifiableSet(EnumSet.of(TaskQuery.SortKey.DUE_DATE, TaskQuery.SortKey.EFFORT, TaskQuery.SortKey.PRIORITY));
+
+    private final LinkedHashMap<Integer, Task> tasksById = new LinkedHashMap<>(); // Insertion order = display order
+    private final Map<Integer, Long> positions = new HashMap<>(); // Display position per id; a replacement keeps it
+    private long nextPosition;
+    private final Comparator<Task> displayOrder = Comparator.comparingLong(task -> positions.get(task.id()));
+    private final Set<Integer> completedIds = new HashSet<>();
+    private final Set<Integer> incompleteIds = new HashSet<>();
+    private final Map<TaskQuery.SortKey, SortedTaskView> sortedViews = new EnumMap<>(TaskQuery.SortKey.class); // Built ones
+    private volatile TaskSnapshot snapshot = TaskSnapshot.of(0, List.of(), displayOrder, sortedViews, this); // Written under the lock
+
+    public synchronized int size() {
+        return tasksById.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return tasksById.isEmpty();
+    }
+
+    public synchronized Task get(int id) {
+        return tasksById.get(id);
+    }
+
+    public synchronized boolean contains(int id) {
+        return tasksById.containsKey(id);
+    }
+
+    // False for unknown ids, so a missing dependency never counts as done
+    public synchronized boolean isCompleted(int id) {
+        return completedIds.contains(id);
+    }
+
+    /**
+     * Adds the task, or replaces the task with the same id keeping its display position.
+     * @return The task previously stored under that id, or null
+     */
+    public synchronized Task put(Task task) {
+        Task previous = store(task);
+        sortedViews.replaceAll((key, view) -> view.replace(previous, task));
+        snapshot = snapshot.next(snapshot.version() + 1, previous, task, sortedViews);
+        return previous;
+    }
+
+    /**
+     * Replaces expected with replacement only if expected is still the stored version of that task.
+     * @return True if the store was changed
+     */
+    public synchronized boolean replace(Task expected, Task replacement) {
+        if (!expected.equals(tasksById.get(expected.id()))) return false;
+        put(replacement);
+        return true;
+    }
+
+    public synchronized Task remove(int id) {
+        Task removed = tasksById.remove(id);
+        if (removed != null) {
+            unindex(removed);
+            sortedViews.replaceAll((key, view) -> view.without(removed));
+            snapshot = snapshot.next(snapshot.version() + 1, removed, null, sortedViews);
+            positions.remove(id); // Only now: the snapshot's views found the task by its position
+        }
+        return removed;
+    }
+
+    // Replaces the whole content, e.g. after a reload or import
+    public synchronized void replaceAll(Collection<Task> tasks) {
+        completedIds.clear();
+        incompleteIds.clear();
+        tasksById.clear();
+        positions.clear();
+        for (Task task : tasks) {
+            store(task);
+        }
+        sortedViews.clear(); // Rebuilt on first use: a reload of a million tasks need not pay three sorts up front
+        snapshot = TaskSnapshot.of(snapshot.version() + 1, tasksById.values(), displayOrder, sortedViews, this); // Also for an empty replacement
+    }
+
+    /**
+     * Consistent, immutable view of the whole store as of the latest write; never blocks and never builds.
+     */
+    public TaskSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Adopts a sorted view a reader built from the snapshot at atVersion, so every mutation keeps it current from
+     * now on. Dropped if the store has changed since; the next reader that needs it builds it from a newer snapshot.
+     * Thought: the O(n log n) sort runs on the reader's thread without the store's lock, so writers only wait for
+     * this version check.
+     */
+    synchronized void adoptSortedView(TaskQuery.SortKey key, SortedTaskView view, long atVersion) {
+        if (SORTED_KEYS.contains(key) && snapshot.version() == atVersion) sortedViews.putIfAbsent(key, view);
+    }
+
+    // Copy of all tasks in display order
+    public synchronized List<Task> list() {
+        return new ArrayList<>(tasksById.values());
+    }
+
+    public synchronized List<Task> incompleteTasks() {
+        List<Task> result = new ArrayList<>(incompleteIds.size());
+        for (int id : incompleteIds) {
+            result.add(tasksById.get(id));
+        }
+        return result;
+    }
+
+    public synchronized int completedCount() {
+        return completedIds.size();
+    }
+
+    // Primary and secondary indexes; the sorted views and the snapshot are left to the caller
+    private Task store(Task task) {
+        Task previous = tasksById.put(task.id(), task);
+        if (previous != null) unindex(previous);
+        else positions.put(task.id(), nextPosition++);
+        (task.isCompleted() ? completedIds : incompleteIds).add(task.id());
+        return previous;
+    }
+
+    private void unindex(Task task) {
+        completedIds.remove(task.id());
+        incompleteIds.remove(task.id());
+    }
+
+    // Categories match case-insensitively, like the old equalsIgnoreCase filter
+    static String categoryKey(String category) {
+        return category == null ? "" : category.toLowerCase(Locale.ROOT);
+    }
+}
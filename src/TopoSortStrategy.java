@@ -4,6 +4,18 @@ import java.util.function.Consumer;
 
 // Step 12.2: Topological sort with priority and due date
 public class TopoSortStrategy implements TaskProcessingStrategy {
+
+    // Ready tasks are taken HIGH priority first, then earliest due date (no due date last)
+    static final Comparator<Task> PRIORITY_ORDER = Comparator.comparing(Task::priority)
+            .thenComparing(Task::dueDate, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private static final byte ON_PATH = 1;
+    private static final byte DONE = 2;
+
+    // Cycle check plus ordering, before any task is handed over; see TaskMetrics
+    private static final TaskMetrics.Histogram ORDERING_TIME = TaskMetrics.histogram("topo.ordering");
+
+    // Throws DependencyCycleException, before running anything, if the graph has a cycle
     @Override
     public void processTasks(List<Task> tasks, Map<Integer, Set<Integer>> dependencyGraph,
                              Consumer<List<Task>> batchProcessor, Runnable updateCallback) {
@@ -11,69 +23,103 @@ public class TopoSortStrategy implements TaskProcessingStrategy {
             if (updateCallback != null) SwingUtilities.invokeLater(updateCallback);
             return;
         }
-        if (hasCycle(dependencyGraph)) {
-            System.out.println("Cannot process tasks: Dependency cycle detected.");
-            JOptionPane.showMessageDialog(null, "Dependency cycle detected. Please resolve circular dependencies.");
-            return;
+        long start = System.nanoTime();
+        List<Integer> cycle = findCycle(dependencyGraph);
+        if (!cycle.isEmpty()) {
+            ORDERING_TIME.recordSince(start);
+            throw new DependencyCycleException(cycle); // Nothing was handed over; the run completes with it
         }
         List<Task> orderedTasks = topologicalSort(tasks, dependencyGraph);
+        ORDERING_TIME.recordSince(start);
         batchProcessor.accept(orderedTasks);
     }
 
-    private boolean hasCycle(Map<Integer, Set<Integer>> graph) {
-        Set<Integer> visited = new HashSet<>();
-        Set<Integer> recursionStack = new HashSet<>();
-        for (Integer taskId : graph.keySet()) {
-            if (hasCycleDFS(taskId, graph, visited, recursionStack)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean hasCycleDFS(Integer taskId, Map<Integer, Set<Integer>> graph,
-                                Set<Integer> visited, Set<Integer> recursionStack) {
-        if (recursionStack.contains(taskId)) return true;
-        if (visited.contains(taskId)) return false;
-        visited.add(taskId);
-        recursionStack.add(taskId);
-        for (Integer depId : graph.getOrDefault(taskId, Collections.emptySet())) {
-            if (hasCycleDFS(depId, graph, visited, recursionStack)) {
-                return true;
+    /**
+     * Finds one dependency cycle with an iterative DFS (no recursion, so deep chains cannot overflow the stack).
+     * @param graph Task id -> ids it depends on
+     * @return The cycle as "depends on" path whose first and last element are the same id, or an empty list
+     * Thought: O(V+E); each node is pushed once and each edge is followed once via a per-frame iterator.
+     */
+    static List<Integer> findCycle(Map<Integer, Set<Integer>> graph) {
+        Map<Integer, Byte> state = new HashMap<>(graph.size() * 2);
+        List<Integer> path = new ArrayList<>();
+        Deque<Iterator<Integer>> frames = new ArrayDeque<>();
+        for (Integer start : graph.keySet()) {
+            if (state.containsKey(start)) continue;
+            state.put(start, ON_PATH);
+            path.add(start);
+            frames.push(graph.getOrDefault(start, Collections.emptySet()).iterator());
+            while (!frames.isEmpty()) {
+                Iterator<Integer> edges = frames.peek();
+                if (edges.hasNext()) {
+                    Integer depId = edges.next();
+                    Byte depState = state.get(depId);
+                    if (depState == null) {
+                        state.put(depId, ON_PATH);
+                        path.add(depId);
+                        frames.push(graph.getOrDefault(depId, Collections.emptySet()).iterator());
+                    } else if (depState == ON_PATH) {
+                        List<Integer> cycle = new ArrayList<>(path.subList(path.lastIndexOf(depId), path.size()));
+                        cycle.add(depId);
+                        return cycle;
+                    }
+                } else {
+                    state.put(path.remove(path.size() - 1), DONE);
+                    frames.pop();
+                }
             }
         }
-        recursionStack.remove(taskId);
-        return false;
+        return Collections.emptyList();
     }
 
+    /**
+     * Kahn's algorithm: dependencies come before their dependents, ties broken by PRIORITY_ORDER.
+     * Tasks that depend on ids missing from the list are left out, as they can never run.
+     * Thought: O(V+E) graph work plus O(log V) per ready-queue operation; the old version rebuilt the whole
+     * queue after every accepted task and re-polled blocked tasks, which was quadratic.
+     */
     private List<Task> topologicalSort(List<Task> tasks, Map<Integer, Set<Integer>> graph) {
-        Set<Integer> visited = new HashSet<>();
-        LinkedList<Task> sortedTasks = new LinkedList<>();
-        PriorityQueue<Task> taskQueue = new PriorityQueue<>(
-                Comparator.comparing(Task::priority, Comparator.reverseOrder())
-                        .thenComparing(Task::dueDate, Comparator.nullsLast(Comparator.naturalOrder()))
-        );
-        taskQueue.addAll(tasks);
+        int size = tasks.size();
+        Map<Integer, Integer> indexById = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            indexById.put(tasks.get(i).id(), i);
+        }
 
-        while (!taskQueue.isEmpty()) {
-            Task task = taskQueue.poll();
-            if (!visited.contains(task.id()) && canProcessTask(task.id(), graph, visited)) {
-                visited.add(task.id());
-                sortedTasks.addFirst(task);
-                PriorityQueue<Task> tempQueue = new PriorityQueue<>(taskQueue.comparator());
-                tempQueue.addAll(taskQueue);
-                taskQueue = tempQueue;
+        int[] pending = new int[size];
+        int[][] dependents = new int[size][];
+        int[] dependentCounts = new int[size];
+        List<int[]> edges = new ArrayList<>(); // {dependency index, dependent index}
+        for (int i = 0; i < size; i++) {
+            for (Integer depId : graph.getOrDefault(tasks.get(i).id(), Collections.emptySet())) {
+                pending[i]++;
+                Integer depIndex = indexById.get(depId);
+                if (depIndex != null) { // Missing dependency: pending never reaches zero
+                    edges.add(new int[]{depIndex, i});
+                    dependentCounts[depIndex]++;
+                }
             }
         }
-        return sortedTasks;
-    }
+        for (int i = 0; i < size; i++) {
+            dependents[i] = new int[dependentCounts[i]];
+            dependentCounts[i] = 0;
+        }
+        for (int[] edge : edges) {
+            dependents[edge[0]][dependentCounts[edge[0]]++] = edge[1];
+        }
 
-    private boolean canProcessTask(Integer taskId, Map<Integer, Set<Integer>> graph, Set<Integer> visited) {
-        for (Integer depId : graph.getOrDefault(taskId, Collections.emptySet())) {
-            if (!visited.contains(depId)) {
-                return false;
+        PriorityQueue<Integer> ready = new PriorityQueue<>(
+                (a, b) -> PRIORITY_ORDER.compare(tasks.get(a), tasks.get(b)));
+        for (int i = 0; i < size; i++) {
+            if (pending[i] == 0) ready.add(i);
+        }
+        List<Task> sortedTasks = new ArrayList<>(size);
+        while (!ready.isEmpty()) {
+            int index = ready.poll();
+            sortedTasks.add(tasks.get(index));
+            for (int dependent : dependents[index]) {
+                if (--pending[dependent] == 0) ready.add(dependent);
             }
         }
-        return true;
+        return sortedTasks;
     }
-}
\ No newline at end of file
+}
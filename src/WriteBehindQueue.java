@@ -0,0 +1,189 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Write-behind stage for task row updates (completions, reverts, edits).
+ * Writers enqueue and return immediately; a single background thread writes the queued rows in one batched
+ * transaction once batchSize rows are waiting or every intervalMillis, whichever comes first. An edit also
+ * replaces the task's dependency rows, in the same transaction as its row.
+ * Thought: only the latest version of each task is kept, so a task that changes twice between flushes costs one
+ * UPDATE. Rows of a failed flush are re-queued unless a newer version arrived in the meantime. After a failure the
+ * timed flushes back off, doubling from the interval up to MAX_BACKOFF_MILLIS, so a database that stays down is
+ * retried (and its failure reported) a few times a minute rather than five times a second; flush() and close()
+ * still try right away.
+ * Configured with -Dtaskmanager.writeBehind.batchSize (default 500) and -Dtaskmanager.writeBehind.intervalMs (default 200).
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    static final String BATCH_SIZE_PROPERTY = "taskmanager.writeBehind.batchSize";
+    static final String INTERVAL_PROPERTY = "taskmanager.writeBehind.intervalMs";
+    static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final TaskDatabase db;
+    private final int batchSize;
+    private final long intervalMillis;
+    private final ScheduledExecutorService flusher;
+    private final LongSupplier pendingGauge = this::pendingCount; // Registered in TaskMetrics until close()
+    private final Object lock = new Object();
+    // Held while a batch is taken and written, so batches reach the database in the order they were taken
+    private final Object flushLock = new Object();
+    private LinkedHashMap<Integer, PendingWrite> pending = new LinkedHashMap<>(); // Guarded by lock
+    private boolean flushRequested; // Guarded by lock: a size-triggered flush is already queued
+    private boolean closed; // Guarded by lock
+    private int failedFlushes; // Guarded by lock: consecutive failed batches
+    private long retryAt; // Guarded by lock: System.nanoTime() before which timed flushes skip, after a failure
+
+    // Latest version of a task; dependencies: its dependency rows must be replaced too
+    private record PendingWrite(Task task, boolean dependencies) {
+        // A newer version keeps an older pending edge replacement, and writes the newer edges
+        PendingWrite mergeInto(PendingWrite older) {
+            return older == null || !older.dependencies || dependencies ? this : new PendingWrite(task, true);
+        }
+    }
+
+    public WriteBehindQueue(TaskDatabase db, int batchSize, long intervalMillis) {
+        this.db = db;
+        this.batchSize = Math.max(1, batchSize);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-write-behind");
+            thread.setDaemon(true); // close() does the final flush; the thread itself must not block JVM exit
+            return thread;
+        });
+        this.intervalMillis = Math.max(1, intervalMillis);
+        flusher.scheduleWithFixedDelay(this::flushWhenDue, this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+        TaskMetrics.gauge("db.pendingWrites", pendingGauge);
+    }
+
+    public static WriteBehindQueue fromSystemProperties(TaskDatabase db) {
+        return new WriteBehindQueue(db,
+                Integer.getInteger(BATCH_SIZE_PROPERTY, 500),
+                Long.getLong(INTERVAL_PROPERTY, 200L));
+    }
+
+    /**
+     * Queues the task's row for writing, replacing any queued version of the same task.
+     * After close() it is written synchronously, together with anything still queued and after any batch in flight,
+     * so an older queued version can never land after it.
+     */
+    public void enqueue(Task task) {
+        enqueue(new PendingWrite(task, false));
+    }
+
+    // Like enqueue, and also replaces the task's dependency rows with task.dependencies() (an edit)
+    public void enqueueWithDependencies(Task task) {
+        enqueue(new PendingWrite(task, true));
+    }
+
+    private void enqueue(PendingWrite write) {
+        synchronized (lock) {
+            pending.merge(write.task().id(), write, (older, newer) -> newer.mergeInto(older));
+            if (!closed) {
+                if (pending.size() >= batchSize && !flushRequested) {
+                    flushRequested = true;
+                    flusher.execute(this::flushWhenDue);
+                }
+                return;
+            }
+        }
+        flushPending();
+    }
+
+    /**
+     * Drops the task's queued write and waits for a batch in flight, so nothing queued before this call can write
+     * the task or its dependency rows after the caller has deleted it.
+     */
+    public void discard(int taskId) {
+        synchronized (flushLock) {
+            synchronized (lock) {
+                pending.remove(taskId);
+            }
+        }
+    }
+
+    public int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Blocks until every row enqueued before this call has been written (or its write has failed and been re-queued).
+     */
+    public void flush() {
+        try {
+            flusher.submit(this::flushPending).get();
+        } catch (RejectedExecutionException e) {
+            flushPending(); // Already closed: the flusher is gone, write on the caller's thread
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while waiting for pending writes: " + e.getMessage());
+        } catch (ExecutionException e) {
+            System.err.println("Flushing pending writes failed: " + e.getCause());
+        }
+    }
+
+    /**
+     * Stops the background flusher and writes everything still queued before returning.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+        }
+        TaskMetrics.unregisterGauge("db.pendingWrites", pendingGauge);
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.err.println("Write-behind flusher did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushPending();
+    }
+
+    // Timed and size-triggered flushes: skipped while backing off after a failure
+    private void flushWhenDue() {
+        synchronized (lock) {
+            if (failedFlushes > 0 && System.nanoTime() - retryAt < 0) return; // flushRequested stays: no resubmits meanwhile
+        }
+        flushPending();
+    }
+
+    private void flushPending() {
+        synchronized (flushLock) {
+            writeBatch();
+        }
+    }
+
+    private void writeBatch() {
+        Map<Integer, PendingWrite> batch;
+        synchronized (lock) {
+            flushRequested = false;
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        List<Task> tasks = new ArrayList<>(batch.size());
+        Set<Integer> replaceDependencies = new HashSet<>();
+        for (PendingWrite write : batch.values()) {
+            tasks.add(write.task());
+            if (write.dependencies()) replaceDependencies.add(write.task().id());
+        }
+        boolean written = db.updateTasks(tasks, replaceDependencies);
+        synchronized (lock) {
+            if (written) {
+                failedFlushes = 0;
+                return;
+            }
+            for (PendingWrite write : batch.values()) { // Keep newer versions queued after the failed batch
+                pending.merge(write.task().id(), write, (newer, failed) -> newer.mergeInto(failed));
+            }
+            failedFlushes++;
+            long backoff = Math.min(MAX_BACKOFF_MILLIS, intervalMillis << Math.min(failedFlushes - 1, 20));
+            retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+        }
+    }
+}